@@ -1,5 +1,6 @@
 package com.whc.rpc.api;
 
+import com.whc.rpc.codegen.RpcCodec;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,6 +17,7 @@ import java.io.Serializable;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@RpcCodec
 public class Blog implements Serializable {
 	private Integer id;
 	private Integer userId;
@@ -1,5 +1,6 @@
 package com.whc.rpc.api;
 
+import com.whc.rpc.codegen.RpcCodec;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,6 +17,7 @@ import java.io.Serializable;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@RpcCodec
 public class User implements Serializable {
 	// 客户端和服务端共有的
 	private Integer id;
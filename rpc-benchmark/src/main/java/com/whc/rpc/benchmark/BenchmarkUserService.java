@@ -0,0 +1,33 @@
+package com.whc.rpc.benchmark;
+
+import com.whc.rpc.api.User;
+import com.whc.rpc.api.UserService;
+
+/**
+ * 端到端基准测试的服务实现
+ * 不打印日志、不做其他处理, 直接返回预先构造的数据, 测量的只是框架本身的开销
+ * @ClassName: BenchmarkUserService
+ * @Author: whc
+ * @Date: 2021/06/30/20:15
+ */
+public class BenchmarkUserService implements UserService {
+
+	private volatile User user = Payloads.user(Payloads.Size.SMALL, 1);
+
+	/**
+	 * 设置 getUserByUserId 返回的数据大小
+	 */
+	public void setPayloadSize(Payloads.Size size) {
+		user = Payloads.user(size, 1);
+	}
+
+	@Override
+	public User getUserByUserId(Integer id) {
+		return user;
+	}
+
+	@Override
+	public Integer insertUserId(User user) {
+		return user.getId();
+	}
+}
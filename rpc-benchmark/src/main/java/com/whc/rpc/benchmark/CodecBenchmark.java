@@ -0,0 +1,119 @@
+package com.whc.rpc.benchmark;
+
+import com.whc.rpc.api.BlogService;
+import com.whc.rpc.api.UserService;
+import com.whc.rpc.codec.CommonDecoder;
+import com.whc.rpc.codec.CommonEncoder;
+import com.whc.rpc.codec.Spliter;
+import com.whc.rpc.enumeration.ProtocolVersion;
+import com.whc.rpc.enumeration.SerializerCode;
+import com.whc.rpc.serializer.CommonSerializer;
+import com.whc.rpc.serializer.ServiceTypeRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编解码基准测试
+ * 消息经过真实的 CommonEncoder / Spliter + CommonDecoder(运行在 EmbeddedChannel 中), 而不是单独测试序列化器,
+ * 因此结果包含协议头、长度回填和 ByteBuf 分配的开销
+ * 每次操作分配的字节数需要加上 GC profiler(-prof gc, 见 gc.alloc.rate.norm), 编码后的帧长度见 CodecBenchmarkMain
+ * @ClassName: CodecBenchmark
+ * @Author: whc
+ * @Date: 2021/06/29/20:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+	@Param({"KRYO", "JSON", "HESSIAN", "PROTOBUF", "GENERATED"})
+	public String serializer;
+
+	@Param({"SMALL", "MEDIUM", "LARGE"})
+	public String size;
+
+	@Param({"REQUEST", "RESPONSE"})
+	public String message;
+
+	// 可以通过 -p protocol=V1 测试旧协议
+	@Param({"V2"})
+	public String protocol;
+
+	private Object msg;
+	private EmbeddedChannel encodeChannel;
+	private EmbeddedChannel decodeChannel;
+	// 编码好的完整数据帧, 每次解码使用它的一个视图
+	private ByteBuf frame;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		// 与服务发布、创建代理时一样收集服务的数据类型
+		ServiceTypeRegistry.registerService(UserService.class);
+		ServiceTypeRegistry.registerService(BlogService.class);
+		CommonSerializer commonSerializer = CommonSerializer.getByCode(SerializerCode.valueOf(serializer).getCode());
+		Payloads.Size payloadSize = Payloads.Size.valueOf(size);
+		msg = "REQUEST".equals(message) ? Payloads.request(payloadSize) : Payloads.response(payloadSize);
+		encodeChannel = new EmbeddedChannel(new CommonEncoder(commonSerializer, ProtocolVersion.valueOf(protocol)));
+		decodeChannel = new EmbeddedChannel(new Spliter(), new CommonDecoder());
+
+		ByteBuf encoded = encode(encodeChannel, msg);
+		frame = Unpooled.directBuffer(encoded.readableBytes()).writeBytes(encoded);
+		encoded.release();
+		// 确认数据帧可以被正确解码
+		if (decode() == null) {
+			throw new IllegalStateException("解码失败: " + serializer + " " + size + " " + message);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		frame.release();
+		encodeChannel.finishAndReleaseAll();
+		decodeChannel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int encode() {
+		ByteBuf out = encode(encodeChannel, msg);
+		int length = out.readableBytes();
+		out.release();
+		return length;
+	}
+
+	@Benchmark
+	public Object decode() {
+		decodeChannel.writeInbound(frame.retainedDuplicate());
+		return decodeChannel.readInbound();
+	}
+
+	/**
+	 * 编码后的帧长度
+	 */
+	public int frameLength() {
+		return frame.readableBytes();
+	}
+
+	static ByteBuf encode(EmbeddedChannel channel, Object msg) {
+		channel.writeOutbound(msg);
+		return channel.readOutbound();
+	}
+}
@@ -0,0 +1,48 @@
+package com.whc.rpc.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行编解码基准测试
+ * 先输出每种序列化器、数据大小下编码后的帧长度, 再带上 GC profiler 运行 CodecBenchmark,
+ * 其余参数与 JMH 命令行一致, 例如 -p serializer=KRYO,GENERATED -p size=LARGE
+ * @ClassName: CodecBenchmarkMain
+ * @Author: whc
+ * @Date: 2021/06/29/21:05
+ */
+public class CodecBenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		printFrameLengths();
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(CodecBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+	private static void printFrameLengths() {
+		System.out.printf("%-10s %-8s %-10s %12s%n", "serializer", "size", "message", "frame bytes");
+		for (String serializer : new String[]{"KRYO", "JSON", "HESSIAN", "PROTOBUF", "GENERATED"}) {
+			for (Payloads.Size size : Payloads.Size.values()) {
+				for (String message : new String[]{"REQUEST", "RESPONSE"}) {
+					CodecBenchmark benchmark = new CodecBenchmark();
+					benchmark.serializer = serializer;
+					benchmark.size = size.name();
+					benchmark.message = message;
+					benchmark.protocol = "V2";
+					benchmark.setup();
+					System.out.printf("%-10s %-8s %-10s %12d%n", serializer, size, message, benchmark.frameLength());
+					benchmark.tearDown();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.whc.rpc.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测负载生成器
+ *
+ * 闭环: 每个线程上一次调用返回后立即发起下一次, 延迟从实际发起时刻开始计算
+ * 开环: 按固定的总速率安排每次调用的计划发起时刻, 均分到各个线程, 延迟从计划发起时刻开始计算;
+ * 服务变慢时后续调用的排队时间也计入延迟, 避免闭环压测中的协调遗漏(coordinated omission);
+ * 落后到测量结束后来不及发起的调用计为未发起(missed), 延迟按至少等待到测量结束记录
+ *
+ * 预热阶段的调用不计入结果
+ * @ClassName: LoadGenerator
+ * @Author: whc
+ * @Date: 2021/06/30/20:30
+ */
+public final class LoadGenerator {
+
+	private final int concurrency;
+	// 开环的总速率(次/秒), 小于等于0表示闭环
+	private final double rate;
+	private final long warmupNanos;
+	private final long durationNanos;
+
+	public LoadGenerator(int concurrency, double rate, long warmupMillis, long durationMillis) {
+		this.concurrency = concurrency;
+		this.rate = rate;
+		this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+		this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+	}
+
+	public Result run(Callable<?> operation) throws InterruptedException {
+		Histogram histogram = new Histogram(3);
+		AtomicLong errors = new AtomicLong();
+		AtomicLong missed = new AtomicLong();
+		long start = System.nanoTime();
+		long measureStart = start + warmupNanos;
+		long end = measureStart + durationNanos;
+		CountDownLatch done = new CountDownLatch(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			int index = i;
+			Thread thread = new Thread(() -> {
+				Histogram local = new Histogram(3);
+				long failed = rate > 0
+						? openLoop(operation, local, start + (long) (index * 1e9 / rate), measureStart, end, missed)
+						: closedLoop(operation, local, measureStart, end);
+				synchronized (histogram) {
+					histogram.add(local);
+				}
+				errors.addAndGet(failed);
+				done.countDown();
+			}, "rpc-benchmark-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		done.await();
+		long elapsed = Math.max(System.nanoTime(), end) - measureStart;
+		return new Result(histogram, errors.get(), missed.get(), elapsed, rate);
+	}
+
+	private long closedLoop(Callable<?> operation, Histogram histogram, long measureStart, long end) {
+		long failed = 0;
+		long begin;
+		while ((begin = System.nanoTime()) < end) {
+			boolean success = call(operation);
+			if (begin >= measureStart) {
+				histogram.recordValue(System.nanoTime() - begin);
+				if (!success) {
+					failed++;
+				}
+			}
+		}
+		return failed;
+	}
+
+	private long openLoop(Callable<?> operation, Histogram histogram, long firstStart, long measureStart, long end, AtomicLong missed) {
+		// 每个线程负责的调用间隔
+		long interval = (long) (concurrency * 1e9 / rate);
+		long failed = 0;
+		for (long intended = firstStart; intended < end; intended += interval) {
+			long now;
+			while ((now = System.nanoTime()) < intended) {
+				LockSupport.parkNanos(intended - now);
+			}
+			if (now >= end) {
+				// 已经落后到测量结束之后, 剩余的调用不再发起, 但不能从结果中消失:
+				// 它们至少等待到了测量结束, 按这个延迟记录并计为未发起
+				long skipped = 0;
+				for (; intended < end; intended += interval) {
+					if (intended >= measureStart) {
+						histogram.recordValue(end - intended);
+						skipped++;
+					}
+				}
+				missed.addAndGet(skipped);
+				break;
+			}
+			boolean success = call(operation);
+			if (intended >= measureStart) {
+				histogram.recordValue(System.nanoTime() - intended);
+				if (!success) {
+					failed++;
+				}
+			}
+		}
+		return failed;
+	}
+
+	private static boolean call(Callable<?> operation) {
+		try {
+			operation.call();
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	public static final class Result {
+
+		// 延迟直方图, 包含未发起的调用
+		private final Histogram histogram;
+		private final long errors;
+		private final long missed;
+		private final long elapsedNanos;
+		private final double targetRate;
+
+		Result(Histogram histogram, long errors, long missed, long elapsedNanos, double targetRate) {
+			this.histogram = histogram;
+			this.errors = errors;
+			this.missed = missed;
+			this.elapsedNanos = elapsedNanos;
+			this.targetRate = targetRate;
+		}
+
+		/**
+		 * @return 实际发起的调用数
+		 */
+		public long operations() {
+			return histogram.getTotalCount() - missed;
+		}
+
+		public long errors() {
+			return errors;
+		}
+
+		/**
+		 * @return 开环压测中落后到测量结束而没有发起的调用数
+		 */
+		public long missed() {
+			return missed;
+		}
+
+		public double throughput() {
+			return operations() * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @return 实际吞吐量比开环目标速率低的比例, 闭环压测时为 0
+		 */
+		public double shortfall() {
+			if (targetRate <= 0) {
+				return 0;
+			}
+			return Math.max(0, 1 - throughput() / targetRate);
+		}
+
+		/**
+		 * @return 延迟百分位(微秒)
+		 */
+		public double percentileMicros(double percentile) {
+			return histogram.getValueAtPercentile(percentile) / 1000.0;
+		}
+
+		public double maxMicros() {
+			return histogram.getMaxValue() / 1000.0;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.whc.rpc.benchmark;
+
+import com.whc.rpc.api.Blog;
+import com.whc.rpc.api.User;
+import com.whc.rpc.api.UserService;
+import com.whc.rpc.entity.RpcRequest;
+import com.whc.rpc.entity.RpcResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基准测试使用的请求与响应数据
+ * SMALL 为单个 User, MEDIUM 为 Blog 列表, LARGE 为较大的 User 列表
+ * @ClassName: Payloads
+ * @Author: whc
+ * @Date: 2021/06/29/20:10
+ */
+public final class Payloads {
+
+	public enum Size {
+
+		SMALL(8, 1),
+		MEDIUM(64, 16),
+		LARGE(512, 256);
+
+		// 字符串字段的长度
+		private final int textLength;
+		// 集合中的元素个数
+		private final int elements;
+
+		Size(int textLength, int elements) {
+			this.textLength = textLength;
+			this.elements = elements;
+		}
+	}
+
+	private Payloads() {
+	}
+
+	/**
+	 * 用户名长度随 size 变化的 User, 端到端测试通过 UserService 发送
+	 */
+	public static User user(Size size, int id) {
+		return User.builder().id(id).userName(text(size.textLength)).sex(id % 2 == 0).build();
+	}
+
+	public static Object payload(Size size) {
+		switch (size) {
+			case SMALL:
+				return user(size, 1);
+			case MEDIUM:
+				List<Blog> blogs = new ArrayList<>(size.elements);
+				for (int i = 0; i < size.elements; i++) {
+					blogs.add(Blog.builder().id(i).userId(i % 4).title(text(size.textLength)).build());
+				}
+				return blogs;
+			default:
+				List<User> users = new ArrayList<>(size.elements);
+				for (int i = 0; i < size.elements; i++) {
+					users.add(user(size, i));
+				}
+				return users;
+		}
+	}
+
+	public static RpcRequest request(Size size) {
+		Object payload = payload(size);
+		return RpcRequest.builder()
+				.requestId(1L)
+				.interfaceName(UserService.class.getCanonicalName())
+				.methodName("insertUserId")
+				.parameters(new Object[]{payload})
+				.paramTypes(new Class<?>[]{payload instanceof List ? List.class : payload.getClass()})
+				.build();
+	}
+
+	public static RpcResponse<Object> response(Size size) {
+		return RpcResponse.success(payload(size), 1L);
+	}
+
+	private static String text(int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, 'x');
+		return new String(chars);
+	}
+}
@@ -0,0 +1,30 @@
+package com.whc.rpc.benchmark;
+
+import com.whc.rpc.loadbalance.LoadBalancer;
+import com.whc.rpc.registry.ServiceEndpoint;
+
+import java.util.List;
+
+/**
+ * 总是选择指定地址的负载均衡器
+ * 每种序列化器各启动一个服务端并注册到同一个服务名下, 客户端需要固定连接使用相同序列化器的服务端
+ * @ClassName: PinnedLoadBalancer
+ * @Author: whc
+ * @Date: 2021/06/30/20:20
+ */
+public class PinnedLoadBalancer implements LoadBalancer {
+
+	private final ServiceEndpoint endpoint;
+
+	public PinnedLoadBalancer(String address) {
+		this.endpoint = ServiceEndpoint.parse(address);
+	}
+
+	@Override
+	public ServiceEndpoint balance(List<ServiceEndpoint> endpoints) {
+		if (!endpoints.contains(endpoint)) {
+			throw new IllegalStateException("服务地址 " + endpoint + " 未注册, 当前地址列表: " + endpoints);
+		}
+		return endpoint;
+	}
+}
@@ -0,0 +1,128 @@
+package com.whc.rpc.benchmark;
+
+import com.whc.rpc.api.User;
+import com.whc.rpc.api.UserService;
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.enumeration.SerializerCode;
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.zk.util.CuratorUtils;
+import com.whc.rpc.transport.RpcClientProxy;
+import com.whc.rpc.transport.netty.client.NettyClient;
+import com.whc.rpc.transport.netty.server.NettyServer;
+import org.apache.curator.test.TestingServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 端到端基准测试
+ * 在同一进程内启动内嵌的 zk、NettyServer 和 NettyClient, 通过 UserService 代理发起调用,
+ * 按 序列化器 x 数据大小 x 并发数 输出吞吐量和 p50/p99/p999 延迟
+ *
+ * 参数通过系统属性指定:
+ * bench.serializers  序列化器, 默认 KRYO,JSON,HESSIAN,PROTOBUF,GENERATED
+ * bench.sizes        数据大小, 默认 SMALL,MEDIUM,LARGE
+ * bench.concurrency  并发数, 默认 1,16,64
+ * bench.method       get(响应携带数据) 或 insert(请求携带数据), 默认 get
+ * bench.rate         开环压测的总速率(次/秒), 未指定时为闭环压测
+ * bench.warmup       预热时间(秒), 默认 5
+ * bench.duration     测量时间(秒), 默认 10
+ * rpc.zookeeper.address  指定时使用外部 zk, 否则启动内嵌的 zk
+ *
+ * 例如: java -Dbench.serializers=KRYO -Dbench.rate=20000 -cp benchmarks.jar com.whc.rpc.benchmark.RpcBenchmarkMain
+ * @ClassName: RpcBenchmarkMain
+ * @Author: whc
+ * @Date: 2021/06/30/21:00
+ */
+public class RpcBenchmarkMain {
+
+	private static final String HOST = "127.0.0.1";
+
+	public static void main(String[] args) throws Exception {
+		// 框架在每次调用时都会打印 info 日志, 压测时只保留警告
+		System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", System.getProperty("bench.log", "warn"));
+
+		String[] serializers = split(System.getProperty("bench.serializers", "KRYO,JSON,HESSIAN,PROTOBUF,GENERATED"));
+		String[] sizes = split(System.getProperty("bench.sizes", "SMALL,MEDIUM,LARGE"));
+		String[] concurrencies = split(System.getProperty("bench.concurrency", "1,16,64"));
+		boolean insert = "insert".equals(System.getProperty("bench.method", "get"));
+		double rate = Double.parseDouble(System.getProperty("bench.rate", "0"));
+		long warmupMillis = Long.parseLong(System.getProperty("bench.warmup", "5")) * 1000;
+		long durationMillis = Long.parseLong(System.getProperty("bench.duration", "10")) * 1000;
+
+		TestingServer zkServer = null;
+		if (System.getProperty(RpcConfigEnum.ZK_ADDRESS.getPropertyValue()) == null) {
+			zkServer = new TestingServer(true);
+			System.setProperty(RpcConfigEnum.ZK_ADDRESS.getPropertyValue(), zkServer.getConnectString());
+		}
+
+		System.out.printf("mode: %s, method: %s, warmup: %ds, duration: %ds%n",
+				rate > 0 ? "open loop, " + (long) rate + " ops/s" : "closed loop",
+				insert ? "insertUserId" : "getUserByUserId", warmupMillis / 1000, durationMillis / 1000);
+		System.out.printf("%-10s %-8s %6s %12s %10s %10s %10s %10s %8s %8s %8s%n",
+				"serializer", "size", "conc", "ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)", "errors", "missed", "short%");
+
+		for (String serializerName : serializers) {
+			int serializer = SerializerCode.valueOf(serializerName).getCode();
+			BenchmarkUserService service = new BenchmarkUserService();
+			int port = startServer(service, serializer);
+			// 每种序列化器一个服务端, 客户端固定连接同一序列化器的服务端
+			NettyClient client = new NettyClient(serializer, new PinnedLoadBalancer(HOST + ":" + port));
+			UserService userService = new RpcClientProxy(client).getProxy(UserService.class);
+			// 先完成服务发现和建立连接, 开环压测时连接建立的耗时会积压到后续调用上
+			userService.getUserByUserId(1);
+
+			for (String sizeName : sizes) {
+				Payloads.Size size = Payloads.Size.valueOf(sizeName);
+				service.setPayloadSize(size);
+				User user = Payloads.user(size, 1);
+				Callable<?> operation = insert ? () -> userService.insertUserId(user) : () -> userService.getUserByUserId(1);
+				for (String concurrency : concurrencies) {
+					LoadGenerator.Result result = new LoadGenerator(Integer.parseInt(concurrency), rate, warmupMillis, durationMillis).run(operation);
+					// missed 和 short% 只在开环压测时有意义: 未发起的调用数, 实际吞吐量比目标速率低的百分比
+					System.out.printf("%-10s %-8s %6s %12.0f %10.1f %10.1f %10.1f %10.1f %8d %8d %8.1f%n",
+							serializerName, sizeName, concurrency, result.throughput(),
+							result.percentileMicros(50), result.percentileMicros(99), result.percentileMicros(99.9),
+							result.maxMicros(), result.errors(), result.missed(), result.shortfall() * 100);
+				}
+			}
+		}
+
+		if (zkServer != null) {
+			zkServer.close();
+		}
+		// NettyServer 没有关闭接口, 直接退出
+		System.exit(0);
+	}
+
+	private static int startServer(BenchmarkUserService service, int serializer) throws IOException, InterruptedException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		NettyServer server = new NettyServer(HOST, port, serializer);
+		server.publishService(service, UserService.class);
+		Thread thread = new Thread(server::start, "rpc-benchmark-server-" + serializer);
+		thread.setDaemon(true);
+		thread.start();
+		// 服务端在端口绑定后才异步注册服务, 等到客户端能发现它时即可调用
+		ServiceEndpoint endpoint = new ServiceEndpoint(HOST, port);
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (true) {
+			List<ServiceEndpoint> endpoints = CuratorUtils.getServiceEndpoints(UserService.class.getCanonicalName());
+			if (endpoints != null && endpoints.contains(endpoint)) {
+				return port;
+			}
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("服务端 " + endpoint + " 注册超时");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	private static String[] split(String value) {
+		return value.trim().split("\\s*,\\s*");
+	}
+}
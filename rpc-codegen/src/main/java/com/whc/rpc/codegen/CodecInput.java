@@ -0,0 +1,36 @@
+package com.whc.rpc.codegen;
+
+/**
+ * 生成的编解码器使用的输入, 与 CodecOutput 对应
+ * @ClassName: CodecInput
+ * @Author: whc
+ * @Date: 2021/06/28/20:25
+ */
+public interface CodecInput {
+
+	boolean readBoolean();
+
+	byte readByte();
+
+	short readShort();
+
+	char readChar();
+
+	int readInt();
+
+	long readLong();
+
+	float readFloat();
+
+	double readDouble();
+
+	String readString();
+
+	byte[] readBytes();
+
+	/**
+	 * 读取数组、集合的元素个数
+	 * 每个元素至少占一个字节, 个数为负数或超过剩余可读字节数说明数据已损坏, 此时抛出异常, 不会按这个个数分配内存
+	 */
+	int readSize();
+}
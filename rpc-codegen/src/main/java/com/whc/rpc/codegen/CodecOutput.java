@@ -0,0 +1,37 @@
+package com.whc.rpc.codegen;
+
+/**
+ * 生成的编解码器使用的输出
+ * 整数使用 zigzag 变长编码, 字符串使用 UTF-8 编码并以长度开头
+ * @ClassName: CodecOutput
+ * @Author: whc
+ * @Date: 2021/06/28/20:25
+ */
+public interface CodecOutput {
+
+	void writeBoolean(boolean value);
+
+	void writeByte(byte value);
+
+	void writeShort(short value);
+
+	void writeChar(char value);
+
+	void writeInt(int value);
+
+	void writeLong(long value);
+
+	void writeFloat(float value);
+
+	void writeDouble(double value);
+
+	/**
+	 * @param value 可以为 null
+	 */
+	void writeString(String value);
+
+	/**
+	 * @param value 可以为 null
+	 */
+	void writeBytes(byte[] value);
+}
@@ -0,0 +1,240 @@
+package com.whc.rpc.codegen;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * 生成的编解码器注册表
+ * 通过 ServiceLoader 加载所有 jar 中生成的编解码器, 编解码器编号为类名的 hashCode, 客户端和服务端一致
+ * 声明类型不确定的字段(Object、泛型、集合等)通过 writeObject/readObject 先写类型标记再写值
+ * @ClassName: CodecRegistry
+ * @Author: whc
+ * @Date: 2021/06/28/20:40
+ */
+public final class CodecRegistry {
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte BOOLEAN = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte SHORT = 7;
+	private static final byte BYTE = 8;
+	private static final byte CHAR = 9;
+	private static final byte BYTES = 10;
+	private static final byte ARRAY = 11;
+	private static final byte LIST = 12;
+	private static final byte SET = 13;
+	private static final byte MAP = 14;
+	private static final byte CLASS = 15;
+	private static final byte ENUM = 16;
+	private static final byte GENERATED = 17;
+
+	private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+	private static final Map<Class<?>, GeneratedCodec<?>> codecsByType = new HashMap<>();
+	private static final Map<Integer, GeneratedCodec<?>> codecsById = new HashMap<>();
+
+	static {
+		for (Class<?> clazz : new Class<?>[]{boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class, void.class}) {
+			PRIMITIVE_TYPES.put(clazz.getName(), clazz);
+		}
+		for (GeneratedCodec<?> codec : ServiceLoader.load(GeneratedCodec.class, CodecRegistry.class.getClassLoader())) {
+			GeneratedCodec<?> previous = codecsById.putIfAbsent(codecId(codec.type()), codec);
+			if (previous != null && previous.type() != codec.type()) {
+				throw new IllegalStateException("编解码器编号冲突: " + previous.type().getName() + " 与 " + codec.type().getName());
+			}
+			codecsByType.put(codec.type(), codec);
+		}
+	}
+
+	private CodecRegistry() {
+	}
+
+	/**
+	 * @return 编解码器, 没有为该类型生成编解码器时返回 null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> GeneratedCodec<T> getCodec(Class<T> type) {
+		return (GeneratedCodec<T>) codecsByType.get(type);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static void writeObject(CodecOutput out, Object value) {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		Class<?> clazz = value.getClass();
+		GeneratedCodec codec = codecsByType.get(clazz);
+		if (codec != null) {
+			out.writeByte(GENERATED);
+			out.writeInt(codecId(clazz));
+			codec.write(value, out);
+		} else if (clazz == String.class) {
+			out.writeByte(STRING);
+			out.writeString((String) value);
+		} else if (clazz == Integer.class) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (clazz == Long.class) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (clazz == Boolean.class) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (clazz == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (clazz == Float.class) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (clazz == Short.class) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (clazz == Byte.class) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (clazz == Character.class) {
+			out.writeByte(CHAR);
+			out.writeChar((Character) value);
+		} else if (clazz == byte[].class) {
+			out.writeByte(BYTES);
+			out.writeBytes((byte[]) value);
+		} else if (clazz.isArray() && !clazz.getComponentType().isPrimitive()) {
+			out.writeByte(ARRAY);
+			out.writeString(clazz.getComponentType().getName());
+			Object[] array = (Object[]) value;
+			out.writeInt(array.length);
+			for (Object element : array) {
+				writeObject(out, element);
+			}
+		} else if (value instanceof List) {
+			out.writeByte(LIST);
+			writeElements(out, (Collection<?>) value);
+		} else if (value instanceof Set) {
+			out.writeByte(SET);
+			writeElements(out, (Collection<?>) value);
+		} else if (value instanceof Map) {
+			out.writeByte(MAP);
+			Map<?, ?> map = (Map<?, ?>) value;
+			out.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeObject(out, entry.getKey());
+				writeObject(out, entry.getValue());
+			}
+		} else if (value instanceof Class) {
+			out.writeByte(CLASS);
+			out.writeString(((Class<?>) value).getName());
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			out.writeString(((Enum<?>) value).getDeclaringClass().getName());
+			out.writeString(((Enum<?>) value).name());
+		} else {
+			throw new IllegalArgumentException("没有为该类型生成编解码器: " + clazz.getName());
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static Object readObject(CodecInput in) {
+		byte tag = in.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case GENERATED:
+				int id = in.readInt();
+				GeneratedCodec<?> codec = codecsById.get(id);
+				if (codec == null) {
+					throw new IllegalArgumentException("找不到编号为 " + id + " 的编解码器");
+				}
+				return codec.read(in);
+			case STRING:
+				return in.readString();
+			case INT:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case BOOLEAN:
+				return in.readBoolean();
+			case DOUBLE:
+				return in.readDouble();
+			case FLOAT:
+				return in.readFloat();
+			case SHORT:
+				return in.readShort();
+			case BYTE:
+				return in.readByte();
+			case CHAR:
+				return in.readChar();
+			case BYTES:
+				return in.readBytes();
+			case ARRAY:
+				Class<?> componentType = forName(in.readString());
+				int length = in.readSize();
+				Object[] array = (Object[]) Array.newInstance(componentType, length);
+				for (int i = 0; i < length; i++) {
+					array[i] = readObject(in);
+				}
+				return array;
+			case LIST:
+				return readElements(in, new ArrayList<>());
+			case SET:
+				return readElements(in, new LinkedHashSet<>());
+			case MAP:
+				int size = in.readSize();
+				Map<Object, Object> map = new LinkedHashMap<>();
+				for (int i = 0; i < size; i++) {
+					map.put(readObject(in), readObject(in));
+				}
+				return map;
+			case CLASS:
+				return forName(in.readString());
+			case ENUM:
+				Class enumType = forName(in.readString());
+				return Enum.valueOf(enumType, in.readString());
+			default:
+				throw new IllegalArgumentException("不识别的类型标记: " + tag);
+		}
+	}
+
+	private static int codecId(Class<?> type) {
+		return type.getName().hashCode();
+	}
+
+	private static void writeElements(CodecOutput out, Collection<?> collection) {
+		out.writeInt(collection.size());
+		for (Object element : collection) {
+			writeObject(out, element);
+		}
+	}
+
+	private static Collection<Object> readElements(CodecInput in, Collection<Object> collection) {
+		int size = in.readSize();
+		for (int i = 0; i < size; i++) {
+			collection.add(readObject(in));
+		}
+		return collection;
+	}
+
+	private static Class<?> forName(String name) {
+		Class<?> clazz = PRIMITIVE_TYPES.get(name);
+		if (clazz != null) {
+			return clazz;
+		}
+		try {
+			return Class.forName(name, false, CodecRegistry.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("找不到类: " + name, e);
+		}
+	}
+}
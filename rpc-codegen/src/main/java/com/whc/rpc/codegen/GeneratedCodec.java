@@ -0,0 +1,26 @@
+package com.whc.rpc.codegen;
+
+/**
+ * 编译期生成的编解码器
+ * 实现类由 CodecProcessor 生成, 并注册在 META-INF/services/com.whc.rpc.codegen.GeneratedCodec 中
+ * @ClassName: GeneratedCodec
+ * @Author: whc
+ * @Date: 2021/06/28/20:20
+ */
+public interface GeneratedCodec<T> {
+
+	/**
+	 * @return 编解码的数据类型
+	 */
+	Class<T> type();
+
+	/**
+	 * 按字段声明顺序写出对象
+	 */
+	void write(T value, CodecOutput out);
+
+	/**
+	 * 按字段声明顺序读取对象
+	 */
+	T read(CodecInput in);
+}
@@ -0,0 +1,21 @@
+package com.whc.rpc.codegen;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要在编译期生成编解码代码的数据类
+ * 编译时 CodecProcessor 为被标记的类生成 类名$$Codec, 按字段逐个读写, 运行时不使用反射
+ * 被标记的类需要有无参构造器, 以及每个非 static、非 transient 字段的 getter/setter(可以由 lombok 生成)
+ * @ClassName: RpcCodec
+ * @Author: whc
+ * @Date: 2021/06/28/20:15
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface RpcCodec {
+}
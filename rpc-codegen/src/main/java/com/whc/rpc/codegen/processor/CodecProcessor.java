@@ -0,0 +1,291 @@
+package com.whc.rpc.codegen.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @RpcCodec 的注解处理器
+ * 为每个被标记的类生成 类名$$Codec, 按字段声明顺序(父类字段在前)读写, 并在处理结束时生成 ServiceLoader 配置文件
+ * 生成的代码通过 getter/setter 访问字段, lombok 生成的方法在生成的代码编译时已经存在
+ * @ClassName: CodecProcessor
+ * @Author: whc
+ * @Date: 2021/06/28/21:10
+ */
+@SupportedAnnotationTypes("com.whc.rpc.codegen.RpcCodec")
+public class CodecProcessor extends AbstractProcessor {
+
+	private static final String CODEC_SUFFIX = "$$Codec";
+	private static final String SERVICE_FILE = "META-INF/services/com.whc.rpc.codegen.GeneratedCodec";
+
+	// 包装类型 -> 读写方法的后缀
+	private static final Map<String, String> BOXED_TYPES = new HashMap<>();
+	// CodecRegistry.writeObject/readObject 能处理的声明类型, 集合类型要能接收 readObject 创建的 ArrayList、LinkedHashSet、LinkedHashMap
+	private static final Set<String> DYNAMIC_TYPES = new HashSet<>(Arrays.asList(
+			"java.lang.Object", "java.lang.String", "java.lang.Class",
+			"java.lang.Iterable", "java.util.Collection", "java.util.List", "java.util.ArrayList",
+			"java.util.Set", "java.util.HashSet", "java.util.LinkedHashSet",
+			"java.util.Map", "java.util.HashMap", "java.util.LinkedHashMap"));
+
+	static {
+		BOXED_TYPES.put("java.lang.Boolean", "Boolean");
+		BOXED_TYPES.put("java.lang.Byte", "Byte");
+		BOXED_TYPES.put("java.lang.Short", "Short");
+		BOXED_TYPES.put("java.lang.Character", "Char");
+		BOXED_TYPES.put("java.lang.Integer", "Int");
+		BOXED_TYPES.put("java.lang.Long", "Long");
+		BOXED_TYPES.put("java.lang.Float", "Float");
+		BOXED_TYPES.put("java.lang.Double", "Double");
+	}
+
+	private final Set<String> generatedCodecs = new LinkedHashSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@RpcCodec 只能用于非抽象类", element);
+					continue;
+				}
+				generateCodec((TypeElement) element);
+			}
+		}
+		if (roundEnv.processingOver() && !generatedCodecs.isEmpty()) {
+			writeServiceFile();
+		}
+		return true;
+	}
+
+	private void generateCodec(TypeElement type) {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String codecSimpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + CODEC_SUFFIX;
+		String codecName = packageName.isEmpty() ? codecSimpleName : packageName + "." + codecSimpleName;
+		String typeName = erasure(type.asType());
+
+		StringBuilder write = new StringBuilder();
+		StringBuilder read = new StringBuilder();
+		for (VariableElement field : fields(type)) {
+			appendField(field, write, read);
+		}
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n * ").append(typeName).append(" 的编解码器, 由 CodecProcessor 生成, 请勿修改\n */\n")
+				.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n")
+				.append("public final class ").append(codecSimpleName)
+				.append(" implements com.whc.rpc.codegen.GeneratedCodec<").append(typeName).append("> {\n\n")
+				.append("\t@Override\n\tpublic Class<").append(typeName).append("> type() {\n")
+				.append("\t\treturn ").append(typeName).append(".class;\n\t}\n\n")
+				.append("\t@Override\n\tpublic void write(").append(typeName).append(" value, com.whc.rpc.codegen.CodecOutput out) {\n")
+				.append(write)
+				.append("\t}\n\n")
+				.append("\t@Override\n\tpublic ").append(typeName).append(" read(com.whc.rpc.codegen.CodecInput in) {\n")
+				.append("\t\t").append(typeName).append(" value = new ").append(typeName).append("();\n")
+				.append(read)
+				.append("\t\treturn value;\n\t}\n}\n");
+
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(codecName, type);
+			try (Writer writer = file.openWriter()) {
+				writer.write(source.toString());
+			}
+			generatedCodecs.add(codecName);
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成编解码器失败: " + e.getMessage(), type);
+		}
+	}
+
+	/**
+	 * 需要读写的字段: 父类字段在前, 跳过 static 和 transient 字段
+	 */
+	private List<VariableElement> fields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<>();
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() == TypeKind.DECLARED) {
+			TypeElement superType = (TypeElement) ((DeclaredType) superclass).asElement();
+			if (!superType.getQualifiedName().contentEquals("java.lang.Object")) {
+				fields.addAll(fields(superType));
+			}
+		}
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			Set<Modifier> modifiers = field.getModifiers();
+			if (!modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.TRANSIENT)) {
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	private void appendField(VariableElement field, StringBuilder write, StringBuilder read) {
+		String name = field.getSimpleName().toString();
+		String property = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		TypeMirror fieldType = field.asType();
+		String getter = "value." + (fieldType.getKind() == TypeKind.BOOLEAN ? "is" : "get") + property + "()";
+		String setter = "value.set" + property;
+
+		if (fieldType.getKind().isPrimitive()) {
+			String method = primitiveMethod(fieldType.getKind());
+			write.append("\t\tout.write").append(method).append('(').append(getter).append(");\n");
+			read.append("\t\t").append(setter).append("(in.read").append(method).append("());\n");
+			return;
+		}
+		String typeName = erasure(fieldType);
+		String boxedMethod = BOXED_TYPES.get(typeName);
+		if (boxedMethod != null) {
+			// 包装类型先写是否为 null
+			write.append("\t\t").append(typeName).append(' ').append(name).append(" = ").append(getter).append(";\n")
+					.append("\t\tout.writeBoolean(").append(name).append(" != null);\n")
+					.append("\t\tif (").append(name).append(" != null) {\n")
+					.append("\t\t\tout.write").append(boxedMethod).append('(').append(name).append(");\n")
+					.append("\t\t}\n");
+			read.append("\t\tif (in.readBoolean()) {\n")
+					.append("\t\t\t").append(setter).append("(in.read").append(boxedMethod).append("());\n")
+					.append("\t\t}\n");
+		} else if ("java.lang.String".equals(typeName)) {
+			write.append("\t\tout.writeString(").append(getter).append(");\n");
+			read.append("\t\t").append(setter).append("(in.readString());\n");
+		} else if ("byte[]".equals(typeName)) {
+			write.append("\t\tout.writeBytes(").append(getter).append(");\n");
+			read.append("\t\t").append(setter).append("(in.readBytes());\n");
+		} else if (isEnum(fieldType)) {
+			write.append("\t\tout.writeString(").append(getter).append(" == null ? null : ").append(getter).append(".name());\n");
+			read.append("\t\tString ").append(name).append(" = in.readString();\n")
+					.append("\t\t").append(setter).append('(').append(name).append(" == null ? null : ")
+					.append(typeName).append(".valueOf(").append(name).append("));\n");
+		} else {
+			// 声明类型不确定(Object、泛型、集合、其他数据类等), 写入类型标记
+			String unsupported = unsupportedType(fieldType);
+			if (unsupported != null) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "字段 " + name + " 的类型 " + unsupported
+						+ " 无法编解码, 只支持基本类型及其包装类型、String、byte[]、枚举、集合、数组和 @RpcCodec 标记的类", field);
+				return;
+			}
+			write.append("\t\tcom.whc.rpc.codegen.CodecRegistry.writeObject(out, ").append(getter).append(");\n");
+			read.append("\t\t").append(setter).append("((").append(typeName).append(") com.whc.rpc.codegen.CodecRegistry.readObject(in));\n");
+		}
+	}
+
+	/**
+	 * 检查通过 CodecRegistry.writeObject 读写的类型, 运行时才会失败的类型(Date、BigDecimal、int[] 等)在编译期报错
+	 * Object、Collection 等声明类型以及类型变量的实际类型只有运行时才知道, 不做检查
+	 * @return 不支持的类型, 支持时返回 null
+	 */
+	private String unsupportedType(TypeMirror type) {
+		switch (type.getKind()) {
+			case TYPEVAR:
+			case WILDCARD:
+				return null;
+			case ARRAY:
+				TypeMirror component = ((ArrayType) type).getComponentType();
+				if (component.getKind().isPrimitive()) {
+					return component.getKind() == TypeKind.BYTE ? null : type.toString();
+				}
+				return unsupportedType(component);
+			case DECLARED:
+				String typeName = erasure(type);
+				if (!BOXED_TYPES.containsKey(typeName) && !DYNAMIC_TYPES.contains(typeName) && !isEnum(type) && !isGenerated(type)) {
+					return type.toString();
+				}
+				for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+					String unsupported = unsupportedType(argument);
+					if (unsupported != null) {
+						return unsupported;
+					}
+				}
+				return null;
+			default:
+				return type.toString();
+		}
+	}
+
+	private boolean isGenerated(TypeMirror type) {
+		for (AnnotationMirror annotation : ((DeclaredType) type).asElement().getAnnotationMirrors()) {
+			if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals("com.whc.rpc.codegen.RpcCodec")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String primitiveMethod(TypeKind kind) {
+		switch (kind) {
+			case BOOLEAN:
+				return "Boolean";
+			case BYTE:
+				return "Byte";
+			case SHORT:
+				return "Short";
+			case CHAR:
+				return "Char";
+			case INT:
+				return "Int";
+			case LONG:
+				return "Long";
+			case FLOAT:
+				return "Float";
+			case DOUBLE:
+				return "Double";
+			default:
+				throw new IllegalArgumentException(kind.toString());
+		}
+	}
+
+	private boolean isEnum(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+	}
+
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	private void writeServiceFile() {
+		Filer filer = processingEnv.getFiler();
+		try {
+			FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+			try (Writer writer = file.openWriter()) {
+				for (String codec : generatedCodecs) {
+					writer.write(codec);
+					writer.write('\n');
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成 " + SERVICE_FILE + " 失败: " + e.getMessage());
+		}
+	}
+}
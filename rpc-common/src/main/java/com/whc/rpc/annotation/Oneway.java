@@ -0,0 +1,21 @@
+package com.whc.rpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记单向调用的服务方法, 只能用于返回 void 的方法
+ * 客户端发出请求后立即返回, 不等待响应; 服务端执行方法后不返回响应
+ * 也可以通过配置 rpc.client.oneway.void=true 把所有返回 void 的方法作为单向调用
+ * @ClassName: Oneway
+ * @Author: whc
+ * @Date: 2021/07/02/20:10
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Oneway {
+}
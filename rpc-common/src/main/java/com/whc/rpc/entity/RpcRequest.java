@@ -1,7 +1,10 @@
 package com.whc.rpc.entity;
 
+import com.whc.rpc.codegen.RpcCodec;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
 
@@ -13,12 +16,15 @@ import java.io.Serializable;
  */
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@RpcCodec
 public class RpcRequest implements Serializable {
 
 	/**
-	 * 请求号
+	 * 请求号, 客户端进程内单调递增
 	 */
-	private String requestId;
+	private long requestId;
 
 	/**
 	 * 待调用接口名称
@@ -40,4 +46,16 @@ public class RpcRequest implements Serializable {
 	 */
 	private Class<?>[] paramTypes;
 
+	/**
+	 * 方法编号, 由方法签名计算得到
+	 * 连接上已约定过该编号时, 请求不再携带接口名、方法名和参数类型, 服务端按编号查找方法
+	 */
+	private int methodId;
+
+	/**
+	 * 单向调用, 服务端不返回响应
+	 * 不参与序列化, 通过 V2 数据帧的标志位传递
+	 */
+	private transient boolean oneway;
+
 }
@@ -1,5 +1,6 @@
 package com.whc.rpc.entity;
 
+import com.whc.rpc.codegen.RpcCodec;
 import com.whc.rpc.enumeration.ResponseCode;
 import lombok.Data;
 
@@ -12,12 +13,13 @@ import java.io.Serializable;
  * @Date: 2021/05/24/18:52
  */
 @Data
+@RpcCodec
 public class RpcResponse<T> implements Serializable {
 
 	/**
 	 * 响应对应的请求号
 	 */
-	private String requestId;
+	private long requestId;
 	/**
 	 * 响应状态码
 	 */
@@ -33,7 +35,7 @@ public class RpcResponse<T> implements Serializable {
 	 */
 	private T data;
 
-	public static <T> RpcResponse<T> success(T data, String requestId) {
+	public static <T> RpcResponse<T> success(T data, long requestId) {
 		RpcResponse<T> response = new RpcResponse<>();
 		response.setRequestId(requestId);
 		response.setStatusCode(ResponseCode.SUCCESS.getCode());
@@ -41,7 +43,7 @@ public class RpcResponse<T> implements Serializable {
 		return response;
 	}
 
-	public static <T> RpcResponse<T> fail(ResponseCode code, String requestId) {
+	public static <T> RpcResponse<T> fail(ResponseCode code, long requestId) {
 		RpcResponse<T> response = new RpcResponse<>();
 		response.setRequestId(requestId);
 		response.setStatusCode(code.getCode());
@@ -0,0 +1,31 @@
+package com.whc.rpc.enumeration;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 传输协议版本
+ * V1: [魔数 0xCAFEBABE][数据包类型][序列化器类型][数据长度][数据], 头部固定16字节
+ * V2: [魔数 0xBABE][版本号][数据包类型|序列化器类型][标志位][变长数据长度][数据], 头部6~10字节
+ * @ClassName: ProtocolVersion
+ * @Author: whc
+ * @Date: 2021/06/21/20:36
+ */
+@AllArgsConstructor
+@Getter
+public enum ProtocolVersion {
+
+	V1(1),
+	V2(2);
+
+	private final int code;
+
+	public static ProtocolVersion getByCode(int code) {
+		for (ProtocolVersion version : values()) {
+			if (version.code == code) {
+				return version;
+			}
+		}
+		return null;
+	}
+}
@@ -13,7 +13,34 @@ import lombok.Getter;
 public enum  RpcConfigEnum {
 
 	RPC_CONFIG_PATH("rpc.properties"),
-	ZK_ADDRESS("rpc.zookeeper.address");
+	ZK_ADDRESS("rpc.zookeeper.address"),
+	PROTOCOL_VERSION("rpc.protocol.version"),
+	// 客户端调用超时时间(毫秒), 可以在后面加上 .接口名.方法名 单独配置某个方法
+	CLIENT_TIMEOUT("rpc.client.timeout"),
+	// 为 true 时所有返回 void 的方法都作为单向调用发送, 默认只有 @Oneway 标记的方法是单向调用
+	CLIENT_ONEWAY_VOID("rpc.client.oneway.void"),
+	// 客户端与每个服务提供者建立的连接数
+	CLIENT_CONNECTIONS("rpc.client.connections"),
+	// 服务端业务线程池的线程数和等待队列容量, 可以在后面加上 .接口名 或 .接口名.方法名 为服务或方法配置独立的线程池
+	SERVER_THREADS("rpc.server.threads"),
+	SERVER_QUEUE_CAPACITY("rpc.server.queue.capacity"),
+	// 服务提供者发布的每核权重(0~10000, 默认 100, 0 表示不再分配新请求)和所在区域
+	SERVER_WEIGHT("rpc.server.weight"),
+	SERVER_ZONE("rpc.server.zone"),
+	// 注册中心扩展名称, 默认 zk
+	REGISTRY("rpc.registry"),
+	// 服务列表变化后延迟发布的时间(毫秒), 期间的多次变化合并为一次发布, 默认 20
+	REGISTRY_DEBOUNCE("rpc.registry.debounce"),
+	// 客户端服务列表快照文件的路径, 默认在 ~/.myrpc 下按 zk 地址命名, 配置为空时不使用快照
+	REGISTRY_SNAPSHOT("rpc.registry.snapshot"),
+	// 有快照时等待 zk 返回服务列表的最长时间(毫秒), 超时后先使用快照, 默认 0 即直接使用快照, zk 返回后再更新
+	REGISTRY_SNAPSHOT_WAIT("rpc.registry.snapshot.wait"),
+	// 客户端负载均衡扩展名称: random(默认)、round、weighted
+	LOAD_BALANCE("rpc.client.loadbalance"),
+	// 服务提供者启动后的预热时间(毫秒), 预热期间按权重负载均衡时权重随启动时间线性增长, 默认 600000
+	CLIENT_WARMUP("rpc.client.warmup"),
+	// 合并 flush: 最多合并的消息数(1 表示每条消息单独 flush), 未达到上限时在当前事件循环任务结束后 flush, 默认 64
+	FLUSH_MAX_BATCH("rpc.flush.max.batch");
 
 	private final String propertyValue;
 
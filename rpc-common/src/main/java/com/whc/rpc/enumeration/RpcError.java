@@ -23,6 +23,12 @@ public enum  RpcError {
 	RESPONSE_NOT_MATCH("响应和请求号不匹配"),
 	REGISTER_SERVICE_FAILED("注册服务失败"),
 	SERVICE_SCAN_PACKAGE_NOT_FOUND("扫描不到包"),
+	REQUEST_TIMEOUT("请求超时"),
+	CHANNEL_CLOSED("连接已关闭"),
+	CLIENT_CONNECT_SERVER_FAILURE("客户端连接服务端失败"),
+	SERVICE_BUSY("服务繁忙"),
+	METHOD_ID_CONFLICT("方法编号冲突"),
+	EXTENSION_NOT_FOUND("找不到扩展"),
 	UNKNOWN_ERROR("未知错误");
 
 	private final String message;
@@ -15,7 +15,8 @@ public enum  SerializerCode {
 	KRYO(0),
 	JSON(1),
 	HESSIAN(2),
-	PROTOBUF(3);
+	PROTOBUF(3),
+	GENERATED(4);
 
 	private final int code;
 }
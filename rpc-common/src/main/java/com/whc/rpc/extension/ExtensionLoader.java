@@ -0,0 +1,133 @@
+package com.whc.rpc.extension;
+
+import com.whc.rpc.factory.SingletonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 扩展加载器
+ * 从 classpath 下所有的 META-INF/extensions/接口全限定名 文件中读取扩展, 每行格式为: 名称=实现类全限定名, # 开头为注释
+ * 每个扩展只创建一个实例并缓存, 使用者可以在自己的 jar 中添加同名文件注册新的序列化器、负载均衡器、注册中心, 同名扩展以先加载到的为准
+ * @ClassName: ExtensionLoader
+ * @Author: whc
+ * @Date: 2021/06/26/15:20
+ */
+public final class ExtensionLoader<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExtensionLoader.class);
+	private static final String EXTENSION_DIRECTORY = "META-INF/extensions/";
+
+	private static final Map<Class<?>, ExtensionLoader<?>> extensionLoaders = new ConcurrentHashMap<>();
+
+	private final Class<T> type;
+	// 名称 -> 扩展实例, 按配置文件中的顺序
+	private volatile Map<String, T> extensions;
+
+	private ExtensionLoader(Class<T> type) {
+		this.type = type;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> ExtensionLoader<T> getExtensionLoader(Class<T> type) {
+		if (type == null || !type.isInterface()) {
+			throw new IllegalArgumentException("扩展类型必须是接口: " + type);
+		}
+		return (ExtensionLoader<T>) extensionLoaders.computeIfAbsent(type, ExtensionLoader::new);
+	}
+
+	/**
+	 * @param name 扩展名称
+	 * @return 扩展实例, 找不到时返回 null
+	 */
+	public T getExtension(String name) {
+		T extension = getExtensionMap().get(name);
+		if (extension == null) {
+			logger.error("找不到扩展: {} [{}]", type.getName(), name);
+		}
+		return extension;
+	}
+
+	public Collection<T> getExtensions() {
+		return getExtensionMap().values();
+	}
+
+	public Set<String> getSupportedExtensions() {
+		return getExtensionMap().keySet();
+	}
+
+	private Map<String, T> getExtensionMap() {
+		Map<String, T> map = extensions;
+		if (map == null) {
+			synchronized (this) {
+				map = extensions;
+				if (map == null) {
+					map = Collections.unmodifiableMap(loadExtensions());
+					extensions = map;
+				}
+			}
+		}
+		return map;
+	}
+
+	private Map<String, T> loadExtensions() {
+		Map<String, T> map = new LinkedHashMap<>();
+		String fileName = EXTENSION_DIRECTORY + type.getName();
+		try {
+			ClassLoader classLoader = ExtensionLoader.class.getClassLoader();
+			Enumeration<URL> urls = classLoader.getResources(fileName);
+			while (urls.hasMoreElements()) {
+				loadResource(map, classLoader, urls.nextElement());
+			}
+		} catch (IOException e) {
+			logger.error("读取扩展配置文件发生错误 [{}]", fileName, e);
+		}
+		return map;
+	}
+
+	private void loadResource(Map<String, T> map, ClassLoader classLoader, URL url) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int commentIndex = line.indexOf('#');
+				if (commentIndex >= 0) {
+					line = line.substring(0, commentIndex);
+				}
+				line = line.trim();
+				int equalsIndex = line.indexOf('=');
+				if (equalsIndex <= 0) {
+					continue;
+				}
+				String name = line.substring(0, equalsIndex).trim();
+				String className = line.substring(equalsIndex + 1).trim();
+				if (map.containsKey(name)) {
+					continue;
+				}
+				try {
+					Class<?> clazz = classLoader.loadClass(className);
+					if (!type.isAssignableFrom(clazz)) {
+						logger.error("扩展 {} 没有实现接口 {}", className, type.getName());
+						continue;
+					}
+					map.put(name, type.cast(SingletonFactory.getInstance(clazz)));
+				} catch (ClassNotFoundException | RuntimeException e) {
+					logger.error("加载扩展 {} 时有错误发生", className, e);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("读取扩展配置文件发生错误 [{}]", url, e);
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package com.whc.rpc.factory;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 单例工厂
@@ -11,21 +11,21 @@ import java.util.Map;
  */
 public class SingletonFactory {
 
-	private static Map<Class, Object> objectMap = new HashMap<>();
+	private static final Map<Class<?>, Object> objectMap = new ConcurrentHashMap<>();
 
 	private SingletonFactory() {}
 
 	public static <T> T getInstance(Class<T> clazz) {
 		Object instance = objectMap.get(clazz);
-		synchronized (clazz) {
-			if(instance == null) {
+		if (instance == null) {
+			// 每个类只会创建一次实例
+			instance = objectMap.computeIfAbsent(clazz, k -> {
 				try {
-					instance = clazz.newInstance();
-					objectMap.put(clazz, instance);
+					return k.newInstance();
 				} catch (IllegalAccessException | InstantiationException e) {
 					throw new RuntimeException(e.getMessage(), e);
 				}
-			}
+			});
 		}
 		return clazz.cast(instance);
 	}
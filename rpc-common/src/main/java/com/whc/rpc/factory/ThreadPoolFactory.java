@@ -45,6 +45,21 @@ public class ThreadPoolFactory {
 
 	}
 
+	/**
+	 * 创建指定大小的线程池, 队列有界, 队列满时提交任务抛出 RejectedExecutionException
+	 * 每次调用都创建新的线程池, 不由 shutDownAll 管理, 由调用方负责关闭
+	 *
+	 * @param threadNamePrefix 作为创建的线程名字的前缀
+	 * @param threads          线程数
+	 * @param queueCapacity    等待队列容量
+	 * @param daemon           指定是否为 Daemon Thread(守护线程)
+	 * @return ExecutorService
+	 */
+	public static ExecutorService createBoundedThreadPool(String threadNamePrefix, int threads, int queueCapacity, Boolean daemon) {
+		return new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_TIME, TimeUnit.MINUTES,
+				new ArrayBlockingQueue<>(queueCapacity), createThreadFactory(threadNamePrefix, daemon), new ThreadPoolExecutor.AbortPolicy());
+	}
+
 	public static void shutDownAll() {
 		logger.info("关闭所有线程池...");
 		threadPollsMap.entrySet().parallelStream().forEach(entry -> {
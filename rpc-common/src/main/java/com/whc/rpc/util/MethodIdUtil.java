@@ -0,0 +1,51 @@
+package com.whc.rpc.util;
+
+import com.google.common.hash.Hashing;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 方法编号工具类
+ * 客户端和服务端根据方法签名计算出相同的编号, 连接上约定之后请求只需携带编号, 不必每次传输接口名、方法名和参数类型
+ * @ClassName: MethodIdUtil
+ * @Author: whc
+ * @Date: 2021/06/22/21:05
+ */
+public class MethodIdUtil {
+
+	private MethodIdUtil() {
+	}
+
+	/**
+	 * 以发布(代理)的服务接口名计算编号, 而不是方法的声明类,
+	 * 父接口中的同一个方法被多个服务继承时, 每个服务得到各自的编号
+	 */
+	public static int methodId(String interfaceName, Method method) {
+		return methodId(interfaceName, method.getName(), method.getParameterTypes());
+	}
+
+	public static int methodId(String interfaceName, String methodName, Class<?>[] paramTypes) {
+		return Hashing.murmur3_32().hashString(methodKey(interfaceName, methodName, paramTypes), StandardCharsets.UTF_8).asInt();
+	}
+
+	public static String methodKey(String interfaceName, Method method) {
+		return methodKey(interfaceName, method.getName(), method.getParameterTypes());
+	}
+
+	/**
+	 * 方法签名, eg: com.whc.rpc.api.UserService#getUserByUserId(java.lang.Integer)
+	 */
+	public static String methodKey(String interfaceName, String methodName, Class<?>[] paramTypes) {
+		StringBuilder sb = new StringBuilder(interfaceName).append('#').append(methodName).append('(');
+		if (paramTypes != null) {
+			for (int i = 0; i < paramTypes.length; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(paramTypes[i].getName());
+			}
+		}
+		return sb.append(')').toString();
+	}
+}
@@ -0,0 +1,69 @@
+package com.whc.rpc.util;
+
+import com.whc.rpc.enumeration.RpcConfigEnum;
+
+import java.util.Properties;
+
+/**
+ * 框架配置
+ * 配置文件 rpc.properties 只在第一次使用时读取一次, 之后直接从内存中读取
+ * 同名的系统属性(-Dkey=value)优先于配置文件, 便于测试和临时调整
+ * @ClassName: RpcConfig
+ * @Author: whc
+ * @Date: 2021/07/03/20:10
+ */
+public final class RpcConfig {
+
+	private static final Properties properties = load();
+
+	private RpcConfig() {
+	}
+
+	/**
+	 * @return 配置值(去掉首尾空白), 未配置时返回 null
+	 */
+	public static String getProperty(String key) {
+		String value = System.getProperty(key);
+		if (value == null) {
+			value = properties.getProperty(key);
+		}
+		return value == null ? null : value.trim();
+	}
+
+	public static String getProperty(RpcConfigEnum config) {
+		return getProperty(config.getPropertyValue());
+	}
+
+	public static String getProperty(RpcConfigEnum config, String defaultValue) {
+		String value = getProperty(config.getPropertyValue());
+		return value == null ? defaultValue : value;
+	}
+
+	public static int getInt(String key, int defaultValue) {
+		String value = getProperty(key);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	public static int getInt(RpcConfigEnum config, int defaultValue) {
+		return getInt(config.getPropertyValue(), defaultValue);
+	}
+
+	public static long getLong(String key, long defaultValue) {
+		String value = getProperty(key);
+		return value == null ? defaultValue : Long.parseLong(value);
+	}
+
+	public static long getLong(RpcConfigEnum config, long defaultValue) {
+		return getLong(config.getPropertyValue(), defaultValue);
+	}
+
+	public static boolean getBoolean(RpcConfigEnum config, boolean defaultValue) {
+		String value = getProperty(config.getPropertyValue());
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	private static Properties load() {
+		Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+		return properties == null ? new Properties() : properties;
+	}
+}
@@ -28,10 +28,15 @@ public class RpcMessageChecker {
 			throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
 		}
 
-		if(!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
+		if(rpcRequest.getRequestId() != rpcResponse.getRequestId()) {
 			throw new RpcException(RpcError.RESPONSE_NOT_MATCH, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
 		}
 
+		if(Integer.valueOf(ResponseCode.SERVICE_BUSY.getCode()).equals(rpcResponse.getStatusCode())) {
+			logger.error("服务繁忙,请求被拒绝,serviceName:{}", rpcRequest.getInterfaceName());
+			throw new RpcException(RpcError.SERVICE_BUSY, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+		}
+
 		if(rpcResponse.getStatusCode() == null || !rpcResponse.getStatusCode().equals(ResponseCode.SUCCESS.getCode())) {
 			logger.error("调用服务失败,serviceName:{}, RpcResponse:{}", rpcRequest.getInterfaceName(), rpcResponse);
 			throw new RpcException(RpcError.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
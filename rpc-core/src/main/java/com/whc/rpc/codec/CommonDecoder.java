@@ -3,12 +3,15 @@ package com.whc.rpc.codec;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
 import com.whc.rpc.enumeration.PackageType;
+import com.whc.rpc.enumeration.ProtocolVersion;
 import com.whc.rpc.enumeration.RpcError;
 import com.whc.rpc.exception.RpcException;
+import com.whc.rpc.serializer.ByteBufSerializer;
 import com.whc.rpc.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.MessageToMessageDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,25 +20,48 @@ import java.util.List;
 /**
  * 通用的解码拦截器
  * 完成 ByteBuf 到 POJO 对象的解码
+ * 位于 Spliter 之后, 收到的已经是一个完整的数据帧, 因此无需 ReplayingDecoder 的重放机制,
+ * 直接在数据帧上反序列化, 不再拷贝出中间 byte[]
  * @ClassName: CommonDecoder
  * @Author: whc
  * @Date: 2021/05/29/21:24
  */
-public class CommonDecoder extends ReplayingDecoder {
+public class CommonDecoder extends MessageToMessageDecoder<ByteBuf> {
 
 	private static final Logger logger = LoggerFactory.getLogger(CommonDecoder.class);
 
-	private static final int MAGIC_NUMBER = 0xCAFEBABE;
-
-
 	@Override
 	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-		int magic = in.readInt();
-		if(magic != MAGIC_NUMBER) {
-			logger.error("不识别的协议包:{}", magic);
-			throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+		int packageCode;
+		int serializerCode;
+		int length;
+		int flags = 0;
+		if (in.getShort(in.readerIndex()) == RpcProtocol.V2_MAGIC_NUMBER) {
+			in.skipBytes(2);
+			int version = in.readUnsignedByte();
+			if (version != ProtocolVersion.V2.getCode()) {
+				logger.error("不识别的协议版本:{}", version);
+				throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+			}
+			int type = in.readUnsignedByte();
+			packageCode = type >>> 4;
+			serializerCode = type & 0x0F;
+			// 标志位
+			flags = in.readUnsignedByte();
+			long varInt = RpcProtocol.getVarInt(in, in.readerIndex());
+			in.skipBytes((int) (varInt >>> 32));
+			length = (int) varInt;
+		} else {
+			int magic = in.readInt();
+			if(magic != RpcProtocol.V1_MAGIC_NUMBER) {
+				logger.error("不识别的协议包:{}", magic);
+				throw new RpcException(RpcError.UNKNOWN_PROTOCOL);
+			}
+			packageCode = in.readInt();
+			serializerCode = in.readInt();
+			// 数据长度
+			length = in.readInt();
 		}
-		int packageCode = in.readInt();
 		Class<?> packageClass;
 		if(packageCode == PackageType.REQUEST_PACK.getCode()) {
 			packageClass = RpcRequest.class;
@@ -45,20 +71,24 @@ public class CommonDecoder extends ReplayingDecoder {
 			logger.error("不识别的数据包:{}", packageCode);
 			throw new RpcException(RpcError.UNKNOWN_PACKAGE_TYPE);
 		}
-		int serializerCode = in.readInt();
 		// 获取序列化器类型
 		CommonSerializer serializer = CommonSerializer.getByCode(serializerCode);
 		if(serializer == null) {
 			logger.error("不识别的反序列化器:{}", serializerCode);
 			throw new RpcException(RpcError.UNKNOWN_SERIALIZER);
 		}
-		// 数据长度
-		int length = in.readInt();
-		byte[] bytes = new byte[length];
-		// 填充数据
-		in.readBytes(bytes);
+		// 数据部分的视图, 与数据帧共享内存
+		ByteBuf body = in.readSlice(length);
 		// 反序列化
-		Object obj = serializer.deserialize(bytes, packageClass);
+		Object obj;
+		if (serializer instanceof ByteBufSerializer) {
+			obj = ((ByteBufSerializer) serializer).deserialize(body, packageClass);
+		} else {
+			obj = serializer.deserialize(ByteBufUtil.getBytes(body), packageClass);
+		}
+		if ((flags & RpcProtocol.FLAG_ONEWAY) != 0 && obj instanceof RpcRequest) {
+			((RpcRequest) obj).setOneway(true);
+		}
 		out.add(obj);
 	}
 }
@@ -2,49 +2,134 @@ package com.whc.rpc.codec;
 
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.enumeration.PackageType;
+import com.whc.rpc.enumeration.ProtocolVersion;
+import com.whc.rpc.serializer.ByteBufSerializer;
 import com.whc.rpc.serializer.CommonSerializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 /**
  * 通信协议的设计
  * 通用的编码拦截器
  * 负责将 POJO 对象编码成 ByteBuf
+ * 按连接上协商的协议版本(见 RpcProtocol.PROTOCOL_VERSION)编码, 未协商时使用构造时指定的版本
  * @ClassName: CommonEncoder
  * @Author: whc
  * @Date: 2021/05/29/20:48
  */
 public class CommonEncoder extends MessageToByteEncoder {
 
-	private static final int MAGIC_NUMBER = 0xCAFEBABE;
-
 	private final CommonSerializer serializer;
+	private final ProtocolVersion defaultVersion;
 
 	public CommonEncoder(CommonSerializer serializer) {
+		this(serializer, ProtocolVersion.V1);
+	}
+
+	public CommonEncoder(CommonSerializer serializer, ProtocolVersion defaultVersion) {
 		this.serializer = serializer;
+		this.defaultVersion = defaultVersion;
 	}
 
-	// 自定义传输协议,防止粘包
-	// 消息格式为: [魔数][数据包类型][序列化器类型][数据长度][数据]
-	//			  4字节   4字节      4字节       4字节
+	// 自定义传输协议,防止粘包, 格式见 RpcProtocol
 	@Override
 	protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
-		// 魔数
-		out.writeInt(MAGIC_NUMBER);
-		// 数据包类型
-		if (msg instanceof RpcRequest) {
-			out.writeInt(PackageType.REQUEST_PACK.getCode());
+		ProtocolVersion version = ctx.channel().attr(RpcProtocol.PROTOCOL_VERSION).get();
+		if (version == null) {
+			version = defaultVersion;
+		}
+		int packageCode = msg instanceof RpcRequest ? PackageType.REQUEST_PACK.getCode() : PackageType.RESPONSE_PACK.getCode();
+		if (version == ProtocolVersion.V2) {
+			encodeV2(msg, packageCode, out);
 		} else {
-			out.writeInt(PackageType.RESPONSE_PACK.getCode());
+			encodeV1(msg, packageCode, out);
 		}
+	}
+
+	private void encodeV1(Object msg, int packageCode, ByteBuf out) {
+		// 魔数
+		out.writeInt(RpcProtocol.V1_MAGIC_NUMBER);
+		// 数据包类型
+		out.writeInt(packageCode);
 		// 序列化器类型
 		out.writeInt(serializer.getCode());
+		if (serializer instanceof ByteBufSerializer) {
+			// 先占位数据长度,数据直接序列化进 out,写完后回填长度,省去一次 byte[] 分配和拷贝
+			int lengthIndex = out.writerIndex();
+			out.writeInt(0);
+			((ByteBufSerializer) serializer).serialize(msg, out);
+			out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+			return;
+		}
 		byte[] bytes = serializer.serialize(msg);
 		// 数据长度
 		out.writeInt(bytes.length);
 		// 数据
 		out.writeBytes(bytes);
 	}
+
+	private void encodeV2(Object msg, int packageCode, ByteBuf out) {
+		int flags = flags(msg);
+		if (!(serializer instanceof ByteBufSerializer)) {
+			byte[] bytes = serializer.serialize(msg);
+			int index = out.writerIndex();
+			out.writeZero(RpcProtocol.V2_FIXED_HEADER_LENGTH);
+			writeV2Header(out, index, packageCode, flags);
+			writeVarInt(out, bytes.length);
+			out.writeBytes(bytes);
+			return;
+		}
+		// 数据长度序列化完才知道, 先按 varint 的最大宽度预留头部, 数据直接序列化进 out,
+		// 再把头部和最短的 varint 紧贴数据回填, 跳过前面多余的预留字节
+		int start = out.writerIndex();
+		int bodyIndex = start + RpcProtocol.V2_FIXED_HEADER_LENGTH + RpcProtocol.V2_MAX_VARINT_LENGTH;
+		out.writeZero(bodyIndex - start);
+		((ByteBufSerializer) serializer).serialize(msg, out);
+		int length = out.writerIndex() - bodyIndex;
+		int width = RpcProtocol.varIntSize(length);
+		int frameIndex = bodyIndex - width - RpcProtocol.V2_FIXED_HEADER_LENGTH;
+		if (out.readerIndex() == start) {
+			// MessageToByteEncoder 为每条消息分配新的 out, 数据帧前不会有其他数据
+			writeV2Header(out, frameIndex, packageCode, flags);
+			RpcProtocol.setVarInt(out, bodyIndex - width, length, width);
+			out.readerIndex(frameIndex);
+			return;
+		}
+		// out 中已有其他数据时不能跳过预留字节, 把数据前移
+		byte[] body = new byte[length];
+		out.getBytes(bodyIndex, body);
+		out.writerIndex(start + RpcProtocol.V2_FIXED_HEADER_LENGTH);
+		writeV2Header(out, start, packageCode, flags);
+		writeVarInt(out, length);
+		out.writeBytes(body);
+	}
+
+	private void writeV2Header(ByteBuf out, int index, int packageCode, int flags) {
+		// 魔数
+		out.setShort(index, RpcProtocol.V2_MAGIC_NUMBER);
+		// 版本号
+		out.setByte(index + 2, ProtocolVersion.V2.getCode());
+		// 数据包类型 | 序列化器类型
+		out.setByte(index + 3, (packageCode << 4) | (serializer.getCode() & 0x0F));
+		// 标志位
+		out.setByte(index + 4, flags);
+	}
+
+	/**
+	 * 数据帧的标志位, 见 RpcProtocol.FLAG_*
+	 */
+	private int flags(Object msg) {
+		if (msg instanceof RpcRequest && ((RpcRequest) msg).isOneway()) {
+			return RpcProtocol.FLAG_ONEWAY;
+		}
+		return 0;
+	}
+
+	private static void writeVarInt(ByteBuf out, int value) {
+		int width = RpcProtocol.varIntSize(value);
+		int index = out.writerIndex();
+		out.writeZero(width);
+		RpcProtocol.setVarInt(out, index, value, width);
+	}
 }
@@ -0,0 +1,115 @@
+package com.whc.rpc.codec;
+
+import com.whc.rpc.enumeration.ProtocolVersion;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AttributeKey;
+
+/**
+ * 自定义传输协议的常量与工具方法
+ *
+ * V1 消息格式为: [魔数][数据包类型][序列化器类型][数据长度][数据]
+ *			     4字节   4字节      4字节       4字节
+ *
+ * V2 消息格式为: [魔数][版本号][数据包类型|序列化器类型][标志位][数据长度][数据]
+ *			     2字节  1字节     高4位 | 低4位(1字节)    1字节  1~5字节(varint)
+ *
+ * 标志位从低位开始依次为: 压缩、单向调用、心跳, 其余位保留
+ * @ClassName: RpcProtocol
+ * @Author: whc
+ * @Date: 2021/06/21/20:48
+ */
+public final class RpcProtocol {
+
+	public static final int V1_MAGIC_NUMBER = 0xCAFEBABE;
+	public static final int V1_HEADER_LENGTH = 16;
+	public static final int V1_LENGTH_FIELD_OFFSET = 12;
+
+	// 与V1魔数的前两个字节不同,读取前两个字节即可区分协议版本
+	public static final short V2_MAGIC_NUMBER = (short) 0xBABE;
+	// 魔数 + 版本号 + 类型 + 标志位
+	public static final int V2_FIXED_HEADER_LENGTH = 5;
+	// int 类型的 varint 最多占用的字节数
+	public static final int V2_MAX_VARINT_LENGTH = 5;
+
+	public static final int FLAG_COMPRESS = 0x01;
+	public static final int FLAG_ONEWAY = 0x02;
+	public static final int FLAG_HEARTBEAT = 0x04;
+
+	/**
+	 * 连接上协商使用的协议版本
+	 * 客户端在建立连接时按配置设置,服务端按收到的第一个数据帧设置,之后按此版本回写
+	 */
+	public static final AttributeKey<ProtocolVersion> PROTOCOL_VERSION = AttributeKey.valueOf("protocolVersion");
+
+	private RpcProtocol() {
+	}
+
+	/**
+	 * 识别 in 中 index 位置开始的数据帧使用的协议版本
+	 * @return 协议版本, 可读字节不足以判断时返回 null
+	 * @throws IllegalArgumentException 不识别的协议
+	 */
+	public static ProtocolVersion detectVersion(ByteBuf in, int index) {
+		if (in.writerIndex() - index < 2) {
+			return null;
+		}
+		if (in.getShort(index) == V2_MAGIC_NUMBER) {
+			return ProtocolVersion.V2;
+		}
+		if (in.writerIndex() - index < 4) {
+			return null;
+		}
+		if (in.getInt(index) == V1_MAGIC_NUMBER) {
+			return ProtocolVersion.V1;
+		}
+		throw new IllegalArgumentException("unknown magic number");
+	}
+
+	public static int varIntSize(int value) {
+		if ((value & (0xFFFFFFFF << 7)) == 0) {
+			return 1;
+		}
+		if ((value & (0xFFFFFFFF << 14)) == 0) {
+			return 2;
+		}
+		if ((value & (0xFFFFFFFF << 21)) == 0) {
+			return 3;
+		}
+		if ((value & (0xFFFFFFFF << 28)) == 0) {
+			return 4;
+		}
+		return 5;
+	}
+
+	/**
+	 * 在 index 处写入占用 width 个字节的 varint, 不足的部分用延续位补齐
+	 * 补齐后的编码依然可以被标准的 varint 解码
+	 */
+	public static void setVarInt(ByteBuf out, int index, int value, int width) {
+		for (int i = 0; i < width - 1; i++) {
+			out.setByte(index + i, (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.setByte(index + width - 1, value & 0x7F);
+	}
+
+	/**
+	 * 读取 index 处的 varint
+	 * @return 低32位为数值, 高32位为占用的字节数; 可读字节不足时返回 -1
+	 */
+	public static long getVarInt(ByteBuf in, int index) {
+		int value = 0;
+		int limit = in.writerIndex();
+		for (int i = 0; i < 5; i++) {
+			if (index + i >= limit) {
+				return -1;
+			}
+			byte b = in.getByte(index + i);
+			value |= (b & 0x7F) << (7 * i);
+			if (b >= 0) {
+				return ((long) (i + 1) << 32) | (value & 0xFFFFFFFFL);
+			}
+		}
+		throw new IllegalArgumentException("malformed varint");
+	}
+}
@@ -1,41 +1,73 @@
 package com.whc.rpc.codec;
 
+import com.whc.rpc.enumeration.ProtocolVersion;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.Attribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
 
 /**
- * Netty 提供了 LengthFieldBasedFrameDecoder，自动屏蔽 TCP 底层的拆包和粘包问题，只需要传入正确的参数，即可轻松解决“读半包“问题。
- *
  * Spliter作用:
- * 1. 基于固定长度域的拆包器,根据我们的自定义协议,把数据拼装成一个个符合我们自定义数据包大小的ByteBuf,接着根据我们的自定义协议解码器去解码
+ * 1. 基于长度域的拆包器,根据我们的自定义协议,把数据拼装成一个个符合我们自定义数据包大小的ByteBuf,接着根据我们的自定义协议解码器去解码
  * 2. 拒绝非本协议连接
+ * 3. 根据魔数识别V1/V2协议, 并把连接上第一个数据帧的协议版本记录为该连接协商的版本
+ *
+ * V2的数据长度为 varint, 长度域的位置和宽度都不固定, 因此不再使用 LengthFieldBasedFrameDecoder,
+ * 而是读取头部得到帧长度后切出完整的数据帧(与入站缓冲区共享内存)交给 CommonDecoder
  *
  * @ClassName: Spliter
  * @Author: whc
  * @Date: 2021/06/04/22:16
  */
-public class Spliter extends LengthFieldBasedFrameDecoder {
+public class Spliter extends ByteToMessageDecoder {
 
-	private static final int MAGIC_NUMBER = 0xCAFEBABE;
-
-	// 消息格式为: [魔数][数据包类型][序列化器类型][数据长度][数据]
-	//			  4字节   4字节      4字节       4字节
-	private static final int LENGTH_FIELD_OFFSET = 12;
-	// 数据长度
-	private static final int LENGTH_FIELD_LENGTH = 4;
-
-	public Spliter() {
-		super(Integer.MAX_VALUE, LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH);
-	}
+	private static final Logger logger = LoggerFactory.getLogger(Spliter.class);
 
 	@Override
-	protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
-		if(in.getInt(in.readerIndex()) != MAGIC_NUMBER) {
-			ctx.channel().closeFuture();
-			return null;
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		int start = in.readerIndex();
+		ProtocolVersion version;
+		try {
+			version = RpcProtocol.detectVersion(in, start);
+		} catch (IllegalArgumentException e) {
+			// 拒绝非本协议连接
+			logger.error("不识别的协议包, 关闭连接: {}", ctx.channel());
+			in.skipBytes(in.readableBytes());
+			ctx.close();
+			return;
 		}
-		return super.decode(ctx, in);
+		if (version == null) {
+			return;
+		}
+		int frameLength;
+		if (version == ProtocolVersion.V2) {
+			long varInt = RpcProtocol.getVarInt(in, start + RpcProtocol.V2_FIXED_HEADER_LENGTH);
+			if (varInt < 0) {
+				return;
+			}
+			frameLength = RpcProtocol.V2_FIXED_HEADER_LENGTH + (int) (varInt >>> 32) + (int) varInt;
+		} else {
+			if (in.readableBytes() < RpcProtocol.V1_HEADER_LENGTH) {
+				return;
+			}
+			frameLength = RpcProtocol.V1_HEADER_LENGTH + in.getInt(start + RpcProtocol.V1_LENGTH_FIELD_OFFSET);
+		}
+		if (frameLength < 0) {
+			throw new CorruptedFrameException("negative frame length: " + frameLength);
+		}
+		if (in.readableBytes() < frameLength) {
+			return;
+		}
+		Attribute<ProtocolVersion> negotiated = ctx.channel().attr(RpcProtocol.PROTOCOL_VERSION);
+		if (negotiated.get() == null) {
+			negotiated.set(version);
+		}
+		out.add(in.retainedSlice(start, frameLength));
+		in.skipBytes(frameLength);
 	}
 }
-
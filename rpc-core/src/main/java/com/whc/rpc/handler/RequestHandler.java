@@ -3,16 +3,17 @@ package com.whc.rpc.handler;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
 import com.whc.rpc.enumeration.ResponseCode;
+import com.whc.rpc.provider.ServiceMethod;
 import com.whc.rpc.provider.ServiceProvider;
 import com.whc.rpc.provider.ServiceProviderImpl;
+import com.whc.rpc.util.MethodIdUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 /**
  * 进行过程调用的处理器
+ * 完整请求按方法签名、精简请求按方法编号查找注册服务时生成的调用器, 不再每次反射查找方法
  * @ClassName: RequestHandler
  * @Author: whc
  * @Date: 2021/05/24/20:27
@@ -27,21 +28,29 @@ public class RequestHandler {
 	}
 
 	public Object handle(RpcRequest rpcRequest) {
-		Object service = serviceProvider.getServiceProvider(rpcRequest.getInterfaceName());
-		return invokeTargetMethod(rpcRequest, service);
+		ServiceMethod serviceMethod;
+		if (rpcRequest.getInterfaceName() == null) {
+			// 精简请求, 只携带了方法编号
+			serviceMethod = serviceProvider.getServiceMethod(rpcRequest.getMethodId());
+		} else {
+			serviceMethod = serviceProvider.getServiceMethod(MethodIdUtil.methodKey(rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes()));
+		}
+		if (serviceMethod == null) {
+			return RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId());
+		}
+		return invokeServiceMethod(rpcRequest, serviceMethod);
 	}
 
-	private Object invokeTargetMethod(RpcRequest rpcRequest, Object service){
+	private Object invokeServiceMethod(RpcRequest rpcRequest, ServiceMethod serviceMethod) {
 		Object result;
 		try {
-			Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-			result = method.invoke(service, rpcRequest.getParameters());
-			logger.info("服务:{} 成功调用方法:{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e ) {
-			return RpcResponse.fail(ResponseCode.METHOD_NOT_FOUND, rpcRequest.getRequestId());
+			result = serviceMethod.invoke(rpcRequest.getParameters());
+			logger.info("服务:{} 成功调用方法:{}", serviceMethod.getServiceName(), serviceMethod.getMethod().getName());
+		} catch (Throwable e) {
+			logger.error("服务:{} 调用方法:{} 失败", serviceMethod.getServiceName(), serviceMethod.getMethod().getName(), e);
+			return RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId());
 		}
 		return result;
 	}
 
 }
-
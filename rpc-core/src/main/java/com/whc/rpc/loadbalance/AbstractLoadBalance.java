@@ -1,24 +1,52 @@
 package com.whc.rpc.loadbalance;
 
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.ServiceMetadata;
+import com.whc.rpc.util.RpcConfig;
+
 import java.util.List;
 
 /**
+ * 负载均衡的公共逻辑, 以及按服务提供者元数据计算权重
  * @ClassName: AbstractLoadBalance
  * @Author: whc
  * @Date: 2021/06/14/1:05
  */
 public abstract class AbstractLoadBalance implements LoadBalancer {
 
+	// 服务提供者的预热时间(毫秒)
+	private static final long WARMUP_MILLIS = RpcConfig.getLong(RpcConfigEnum.CLIENT_WARMUP, 10 * 60 * 1000);
+
 	@Override
-	public String balance(List<String> serviceAddresses) {
-		if (serviceAddresses == null || serviceAddresses.size() == 0) {
+	public ServiceEndpoint balance(List<ServiceEndpoint> endpoints) {
+		if (endpoints == null || endpoints.size() == 0) {
 			return null;
 		}
-		if (serviceAddresses.size() == 1) {
-			return serviceAddresses.get(0);
+		if (endpoints.size() == 1) {
+			return endpoints.get(0);
 		}
-		return doSelect(serviceAddresses);
+		return doSelect(endpoints);
 	}
 
-	protected abstract String doSelect(List<String> serviceAddresses);
+	protected abstract ServiceEndpoint doSelect(List<ServiceEndpoint> endpoints);
+
+	/**
+	 * 服务提供者的有效权重 = 每核权重 * CPU核心数(未知时按1核)
+	 * 启动时间不足预热时间时, 权重按已启动时间占预热时间的比例降低, 避免刚启动(JIT、连接池、缓存未就绪)的节点立即承担全部流量
+	 * @param now 当前时间戳(毫秒)
+	 */
+	protected int getWeight(ServiceEndpoint endpoint, long now) {
+		ServiceMetadata metadata = endpoint.getMetadata();
+		// 解析元数据时已经限制了核心数, 这里仍按 long 计算, 直接构造的元数据也不会溢出成负数
+		long weight = Math.min(Integer.MAX_VALUE, (long) metadata.getWeight() * Math.max(1, metadata.getCpus()));
+		if (weight > 0 && WARMUP_MILLIS > 0 && metadata.getStartTimestamp() > 0) {
+			long uptime = now - metadata.getStartTimestamp();
+			// uptime 小于0说明两台机器的时钟不一致, 不做预热
+			if (uptime >= 0 && uptime < WARMUP_MILLIS) {
+				weight = Math.max(1, weight * uptime / WARMUP_MILLIS);
+			}
+		}
+		return (int) weight;
+	}
 }
@@ -1,15 +1,42 @@
 package com.whc.rpc.loadbalance;
 
 
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.enumeration.RpcError;
+import com.whc.rpc.exception.RpcException;
+import com.whc.rpc.extension.ExtensionLoader;
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.util.RpcConfig;
+
 import java.util.List;
 
 /**
  * 负载均衡接口
- * 给服务器地址列表,根据不同的负载均衡策略选择一个
+ * 给服务提供者列表,根据不同的负载均衡策略选择一个
  * @ClassName: LoadBalancer
  * @Author: whc
  * @Date: 2021/06/12/22:08
  */
 public interface LoadBalancer {
-	String balance(List<String> serviceAddresses);
+
+	String DEFAULT_LOAD_BALANCE = "random";
+
+	/**
+	 * @param endpoints 服务提供者列表, 不可修改
+	 * @return 选中的服务提供者, 列表为空时返回 null
+	 */
+	ServiceEndpoint balance(List<ServiceEndpoint> endpoints);
+
+	/**
+	 * 获取配置文件中 rpc.client.loadbalance 指定的负载均衡器, 未配置时使用随机负载均衡
+	 * 负载均衡器在 META-INF/extensions/com.whc.rpc.loadbalance.LoadBalancer 中注册
+	 */
+	static LoadBalancer getDefault() {
+		String name = RpcConfig.getProperty(RpcConfigEnum.LOAD_BALANCE, DEFAULT_LOAD_BALANCE);
+		LoadBalancer loadBalancer = ExtensionLoader.getExtensionLoader(LoadBalancer.class).getExtension(name);
+		if (loadBalancer == null) {
+			throw new RpcException(RpcError.EXTENSION_NOT_FOUND, "loadBalance:" + name);
+		}
+		return loadBalancer;
+	}
 }
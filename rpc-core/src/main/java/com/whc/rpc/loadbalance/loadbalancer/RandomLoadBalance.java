@@ -1,9 +1,10 @@
 package com.whc.rpc.loadbalance.loadbalancer;
 
 import com.whc.rpc.loadbalance.AbstractLoadBalance;
+import com.whc.rpc.registry.ServiceEndpoint;
 
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 随机负载均衡
@@ -14,8 +15,8 @@ import java.util.Random;
 public class RandomLoadBalance extends AbstractLoadBalance {
 
 	@Override
-	protected String doSelect(List<String> serviceAddresses) {
-		return serviceAddresses.get(new Random().nextInt(serviceAddresses.size()));
+	protected ServiceEndpoint doSelect(List<ServiceEndpoint> endpoints) {
+		return endpoints.get(ThreadLocalRandom.current().nextInt(endpoints.size()));
 	}
 
 }
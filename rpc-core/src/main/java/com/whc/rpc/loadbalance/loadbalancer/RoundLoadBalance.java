@@ -1,8 +1,10 @@
 package com.whc.rpc.loadbalance.loadbalancer;
 
 import com.whc.rpc.loadbalance.AbstractLoadBalance;
+import com.whc.rpc.registry.ServiceEndpoint;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 轮询负载均衡
@@ -12,13 +14,10 @@ import java.util.List;
  */
 public class RoundLoadBalance extends AbstractLoadBalance {
 
-	private int index = 0;
+	private final AtomicInteger index = new AtomicInteger();
 
 	@Override
-	protected String doSelect(List<String> serviceAddresses) {
-		if(index >= serviceAddresses.size()) {
-			index %= serviceAddresses.size();
-		}
-		return serviceAddresses.get(index++);
+	protected ServiceEndpoint doSelect(List<ServiceEndpoint> endpoints) {
+		return endpoints.get((index.getAndIncrement() & Integer.MAX_VALUE) % endpoints.size());
 	}
 }
@@ -0,0 +1,47 @@
+package com.whc.rpc.loadbalance.loadbalancer;
+
+import com.whc.rpc.loadbalance.AbstractLoadBalance;
+import com.whc.rpc.registry.ServiceEndpoint;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 加权随机负载均衡
+ * 权重来自服务提供者发布的元数据(每核权重 * CPU核心数, 预热期间按比例降低), 见 AbstractLoadBalance.getWeight
+ * 所有服务提供者权重相同时退化为普通随机
+ * @ClassName: WeightedRandomLoadBalance
+ * @Author: whc
+ * @Date: 2021/07/06/21:30
+ */
+public class WeightedRandomLoadBalance extends AbstractLoadBalance {
+
+	@Override
+	protected ServiceEndpoint doSelect(List<ServiceEndpoint> endpoints) {
+		long now = System.currentTimeMillis();
+		int size = endpoints.size();
+		// 权重之和可能超过 int 范围
+		long totalWeight = 0;
+		boolean sameWeight = true;
+		int firstWeight = getWeight(endpoints.get(0), now);
+		for (int i = 0; i < size; i++) {
+			int weight = i == 0 ? firstWeight : getWeight(endpoints.get(i), now);
+			totalWeight += weight;
+			if (weight != firstWeight) {
+				sameWeight = false;
+			}
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (totalWeight > 0 && !sameWeight) {
+			// 随机落在哪个服务提供者的权重区间内
+			long offset = random.nextLong(totalWeight);
+			for (int i = 0; i < size; i++) {
+				offset -= getWeight(endpoints.get(i), now);
+				if (offset < 0) {
+					return endpoints.get(i);
+				}
+			}
+		}
+		return endpoints.get(random.nextInt(size));
+	}
+}
@@ -0,0 +1,72 @@
+package com.whc.rpc.provider;
+
+import com.whc.rpc.enumeration.RpcError;
+import com.whc.rpc.exception.RpcException;
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * 服务端导出的一个服务方法
+ * 注册服务时预先生成绑定了服务实现对象的 MethodHandle, 调用时不再进行反射查找和访问检查
+ * @ClassName: ServiceMethod
+ * @Author: whc
+ * @Date: 2021/06/22/21:20
+ */
+@Getter
+public class ServiceMethod {
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+	/**
+	 * 服务接口名称
+	 */
+	private final String serviceName;
+
+	/**
+	 * 服务实现对象
+	 */
+	private final Object service;
+
+	/**
+	 * 服务方法
+	 */
+	private final Method method;
+
+	/**
+	 * 调用器, 类型为 (Object[]) -> Object
+	 */
+	private final MethodHandle invoker;
+
+	public ServiceMethod(String serviceName, Object service, Method method) {
+		this.serviceName = serviceName;
+		this.service = service;
+		this.method = method;
+		this.invoker = createInvoker(service, method);
+	}
+
+	/**
+	 * 调用服务方法, 服务方法抛出的异常原样抛出
+	 * @param args 参数, 无参方法可以为 null
+	 * @return 返回值, 基本类型会被装箱, void 方法返回 null
+	 */
+	public Object invoke(Object[] args) throws Throwable {
+		return (Object) invoker.invokeExact(args);
+	}
+
+	private static MethodHandle createInvoker(Object service, Method method) {
+		try {
+			// 接口不是 public 时需要先放开访问检查
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method)
+					.bindTo(service)
+					.asSpreader(Object[].class, method.getParameterCount())
+					.asType(INVOKER_TYPE);
+		} catch (IllegalAccessException | SecurityException e) {
+			throw new RpcException(RpcError.REGISTER_SERVICE_FAILED, method.toString());
+		}
+	}
+}
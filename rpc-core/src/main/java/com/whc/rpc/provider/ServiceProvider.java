@@ -11,4 +11,18 @@ public interface ServiceProvider {
 	<T> void addServiceProvider(T service, Class<T> serviceClass);
 
 	Object getServiceProvider(String serviceName);
+
+	/**
+	 * 根据方法编号查找导出的服务方法
+	 * @param methodId 方法编号, 见 MethodIdUtil
+	 * @return 服务方法, 找不到时返回 null
+	 */
+	ServiceMethod getServiceMethod(int methodId);
+
+	/**
+	 * 根据方法签名查找导出的服务方法
+	 * @param methodKey 方法签名, 见 MethodIdUtil.methodKey
+	 * @return 服务方法, 找不到时返回 null
+	 */
+	ServiceMethod getServiceMethod(String methodKey);
 }
@@ -2,9 +2,12 @@ package com.whc.rpc.provider;
 
 import com.whc.rpc.enumeration.RpcError;
 import com.whc.rpc.exception.RpcException;
+import com.whc.rpc.util.MethodIdUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,17 +25,47 @@ public class ServiceProviderImpl implements ServiceProvider {
 	// 缓存到本地的server服务
 	private static final Map<String, Object> serviceMap = new ConcurrentHashMap<>();
 	private static final Set<String> registeredService = ConcurrentHashMap.newKeySet();
+	// 方法编号 -> 服务方法
+	private static final Map<Integer, ServiceMethod> methodMap = new ConcurrentHashMap<>();
+	// 方法签名 -> 服务方法
+	private static final Map<String, ServiceMethod> methodKeyMap = new ConcurrentHashMap<>();
 
 	@Override
-	public <T> void addServiceProvider(T service, Class<T> serviceClass) {
+	public synchronized <T> void addServiceProvider(T service, Class<T> serviceClass) {
 		String serviceName = serviceClass.getCanonicalName();
 		if(registeredService.contains(serviceName)) return;
+		// 精简请求只按方法编号查找方法, 编号冲突时无法区分, 发布前先检查, 有冲突则整个服务都不发布
+		Map<Integer, ServiceMethod> methods = new HashMap<>();
+		for (Method method : serviceClass.getMethods()) {
+			ServiceMethod serviceMethod = new ServiceMethod(serviceName, service, method);
+			int methodId = MethodIdUtil.methodId(serviceName, method);
+			ServiceMethod previous = methodMap.get(methodId);
+			if (previous == null) {
+				previous = methods.get(methodId);
+			}
+			if (previous != null && !sameMethod(previous, serviceName, method)) {
+				logger.error("方法编号冲突: {} 与 {}", previous.getMethod(), method);
+				throw new RpcException(RpcError.METHOD_ID_CONFLICT, previous.getMethod() + " 与 " + method);
+			}
+			methods.putIfAbsent(methodId, serviceMethod);
+		}
 		registeredService.add(serviceName);
 		// com.whc.test.UserService -> com.whc.test.UserServiceImpl
 		serviceMap.put(serviceName, service);
+		for (Map.Entry<Integer, ServiceMethod> entry : methods.entrySet()) {
+			methodKeyMap.put(MethodIdUtil.methodKey(serviceName, entry.getValue().getMethod()), entry.getValue());
+			methodMap.put(entry.getKey(), entry.getValue());
+		}
 		logger.info("向接口: {} 注册服务: {}", service.getClass().getInterfaces(), service);
 	}
 
+	/**
+	 * 子接口以协变返回类型重写父接口方法时 getMethods 会返回签名相同的两个方法, 调用哪一个结果都一样, 不算冲突
+	 */
+	private static boolean sameMethod(ServiceMethod previous, String serviceName, Method method) {
+		return MethodIdUtil.methodKey(previous.getServiceName(), previous.getMethod()).equals(MethodIdUtil.methodKey(serviceName, method));
+	}
+
 	@Override
 	public Object getServiceProvider(String serviceName) {
 		// com.whc.test.UserService -> com.whc.test.UserServiceImpl
@@ -42,4 +75,14 @@ public class ServiceProviderImpl implements ServiceProvider {
 		}
 		return service;
 	}
+
+	@Override
+	public ServiceMethod getServiceMethod(int methodId) {
+		return methodMap.get(methodId);
+	}
+
+	@Override
+	public ServiceMethod getServiceMethod(String methodKey) {
+		return methodKeyMap.get(methodKey);
+	}
 }
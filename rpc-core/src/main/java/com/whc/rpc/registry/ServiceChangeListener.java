@@ -0,0 +1,21 @@
+package com.whc.rpc.registry;
+
+import java.util.List;
+
+/**
+ * 服务提供者列表变化的监听器, 例如连接池在服务提供者下线后关闭对应的连接
+ * 同一批变化只通知一次, 回调在注册中心的通知线程上执行, 不应阻塞
+ * @ClassName: ServiceChangeListener
+ * @Author: whc
+ * @Date: 2021/07/04/15:20
+ */
+public interface ServiceChangeListener {
+
+	/**
+	 * @param serviceName 服务名称
+	 * @param endpoints 变化后的服务提供者列表(不可修改)
+	 * @param added 新上线的服务提供者
+	 * @param removed 已下线的服务提供者
+	 */
+	void onChange(String serviceName, List<ServiceEndpoint> endpoints, List<ServiceEndpoint> added, List<ServiceEndpoint> removed);
+}
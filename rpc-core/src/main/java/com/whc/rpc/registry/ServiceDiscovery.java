@@ -1,7 +1,5 @@
 package com.whc.rpc.registry;
 
-import java.net.InetSocketAddress;
-
 /**
  * 服务发现接口
  * 查询: 根据服务名查找地址
@@ -14,7 +12,24 @@ public interface ServiceDiscovery {
 	/**
 	 * 根据服务名称查找服务实体
 	 * @param serviceName 服务名称
-	 * @return 服务实体
+	 * @return 负载均衡选中的服务提供者
+	 */
+	ServiceEndpoint serviceDiscovery(String serviceName);
+
+	/**
+	 * 根据服务名称查找支持指定序列化器的服务实体
+	 * @param serviceName 服务名称
+	 * @param serializerCode 客户端使用的序列化器编号
+	 * @return 负载均衡选中的服务提供者
+	 */
+	default ServiceEndpoint serviceDiscovery(String serviceName, int serializerCode) {
+		return serviceDiscovery(serviceName);
+	}
+
+	/**
+	 * 订阅服务提供者列表的变化, 同一个监听器只会注册一次
+	 * @param listener 监听器
 	 */
-	InetSocketAddress serviceDiscovery(String serviceName);
+	default void addListener(ServiceChangeListener listener) {
+	}
 }
@@ -0,0 +1,74 @@
+package com.whc.rpc.registry;
+
+import lombok.Getter;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 服务提供者的地址和元数据
+ * 在服务列表变化时解析一次, 之后每次调用直接使用解析好的地址, 不再拆分字符串和创建 InetSocketAddress
+ * 相等性只比较地址, 同一地址的元数据变化不算作服务提供者的上下线
+ * 不可变, 可以在线程间安全共享
+ * @ClassName: ServiceEndpoint
+ * @Author: whc
+ * @Date: 2021/07/03/20:40
+ */
+@Getter
+public final class ServiceEndpoint {
+
+	private final String host;
+	private final int port;
+	// host:port, 即注册中心中的节点名
+	private final String address;
+	private final InetSocketAddress socketAddress;
+	private final ServiceMetadata metadata;
+
+	public ServiceEndpoint(String host, int port) {
+		this(host, port, ServiceMetadata.DEFAULT);
+	}
+
+	public ServiceEndpoint(String host, int port, ServiceMetadata metadata) {
+		this.host = host;
+		this.port = port;
+		this.address = host + ":" + port;
+		this.socketAddress = new InetSocketAddress(host, port);
+		this.metadata = metadata;
+	}
+
+	/**
+	 * @param address host:port
+	 */
+	public static ServiceEndpoint parse(String address) {
+		return parse(address, ServiceMetadata.DEFAULT);
+	}
+
+	/**
+	 * @param address host:port
+	 * @param metadata 服务提供者发布的元数据
+	 */
+	public static ServiceEndpoint parse(String address, ServiceMetadata metadata) {
+		int index = address.lastIndexOf(':');
+		if (index <= 0 || index == address.length() - 1) {
+			throw new IllegalArgumentException("服务地址格式错误: " + address);
+		}
+		return new ServiceEndpoint(address.substring(0, index), Integer.parseInt(address.substring(index + 1)), metadata);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		return o instanceof ServiceEndpoint && address.equals(((ServiceEndpoint) o).address);
+	}
+
+	@Override
+	public int hashCode() {
+		return address.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return address;
+	}
+}
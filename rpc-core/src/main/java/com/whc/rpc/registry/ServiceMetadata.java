@@ -0,0 +1,196 @@
+package com.whc.rpc.registry;
+
+import com.whc.rpc.enumeration.ProtocolVersion;
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.enumeration.SerializerCode;
+import com.whc.rpc.serializer.CommonSerializer;
+import com.whc.rpc.util.RpcConfig;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 服务提供者的元数据, 作为注册中心中服务地址节点的数据发布
+ * 编码为紧凑的文本: w=100;s=0,1,4;c=8;t=1625...;z=zone-a;v=2
+ * 解析时忽略不认识的字段, 缺少的字段使用默认值, 旧版本的服务提供者没有节点数据时得到 DEFAULT
+ * @ClassName: ServiceMetadata
+ * @Author: whc
+ * @Date: 2021/07/06/20:15
+ */
+@Getter
+@Builder
+@EqualsAndHashCode
+public final class ServiceMetadata {
+
+	public static final int DEFAULT_WEIGHT = 100;
+	public static final int MAX_WEIGHT = 10000;
+	// 有效权重 = 每核权重 * CPU核心数, 限制核心数保证乘积不会溢出
+	public static final int MAX_CPUS = 1024;
+
+	public static final ServiceMetadata DEFAULT = ServiceMetadata.builder().build();
+
+	/**
+	 * 每个 CPU 核心的相对权重, 0 表示不再分配新的请求
+	 */
+	@Builder.Default
+	private final int weight = DEFAULT_WEIGHT;
+
+	/**
+	 * 支持的序列化器编号, 为空表示未知
+	 */
+	@Builder.Default
+	private final List<Integer> serializers = Collections.emptyList();
+
+	/**
+	 * CPU 核心数, 0 表示未知
+	 */
+	private final int cpus;
+
+	/**
+	 * 服务提供者的启动时间戳(毫秒), 0 表示未知
+	 */
+	private final long startTimestamp;
+
+	/**
+	 * 所在区域, 可以为 null
+	 */
+	private final String zone;
+
+	/**
+	 * 支持的最高协议版本, 0 表示未知
+	 */
+	private final int protocolVersion;
+
+	/**
+	 * 当前进程作为服务提供者的元数据, 权重和区域由 rpc.server.weight 和 rpc.server.zone 配置
+	 * 服务端按数据帧中的序列化器编号解码, 本地能加载的序列化器都是支持的
+	 */
+	public static ServiceMetadata local(ProtocolVersion protocolVersion, long startTimestamp) {
+		List<Integer> serializers = new ArrayList<>();
+		for (SerializerCode code : SerializerCode.values()) {
+			if (CommonSerializer.getByCode(code.getCode()) != null) {
+				serializers.add(code.getCode());
+			}
+		}
+		String zone = RpcConfig.getProperty(RpcConfigEnum.SERVER_ZONE);
+		return ServiceMetadata.builder()
+				.weight(clampWeight(RpcConfig.getInt(RpcConfigEnum.SERVER_WEIGHT, DEFAULT_WEIGHT)))
+				.serializers(Collections.unmodifiableList(serializers))
+				.cpus(Runtime.getRuntime().availableProcessors())
+				.startTimestamp(startTimestamp)
+				.zone(zone == null || zone.isEmpty() ? null : zone)
+				.protocolVersion(protocolVersion.getCode())
+				.build();
+	}
+
+	public boolean supportsSerializer(int code) {
+		return serializers.isEmpty() || serializers.contains(code);
+	}
+
+	public String encode() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("w=").append(weight);
+		if (!serializers.isEmpty()) {
+			sb.append(";s=");
+			for (int i = 0; i < serializers.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(serializers.get(i));
+			}
+		}
+		if (cpus > 0) {
+			sb.append(";c=").append(cpus);
+		}
+		if (startTimestamp > 0) {
+			sb.append(";t=").append(startTimestamp);
+		}
+		if (zone != null) {
+			// 区域名中的分隔符替换掉, 保证可以解析回来
+			sb.append(";z=").append(zone.replace(';', '_').replace('=', '_'));
+		}
+		if (protocolVersion > 0) {
+			sb.append(";v=").append(protocolVersion);
+		}
+		return sb.toString();
+	}
+
+	public byte[] toBytes() {
+		return encode().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param data 节点数据, 可以为 null
+	 */
+	public static ServiceMetadata parse(byte[] data) {
+		if (data == null || data.length == 0) {
+			return DEFAULT;
+		}
+		return parse(new String(data, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 解析 encode 的结果, 格式错误的字段使用默认值
+	 */
+	public static ServiceMetadata parse(String text) {
+		if (text == null || text.isEmpty()) {
+			return DEFAULT;
+		}
+		ServiceMetadataBuilder builder = ServiceMetadata.builder();
+		for (String field : text.split(";")) {
+			int index = field.indexOf('=');
+			if (index <= 0) {
+				continue;
+			}
+			String value = field.substring(index + 1).trim();
+			try {
+				switch (field.substring(0, index).trim()) {
+					case "w":
+						builder.weight(clampWeight(Integer.parseInt(value)));
+						break;
+					case "s":
+						List<Integer> serializers = new ArrayList<>();
+						for (String code : value.split(",")) {
+							if (!code.isEmpty()) {
+								serializers.add(Integer.parseInt(code.trim()));
+							}
+						}
+						builder.serializers(Collections.unmodifiableList(serializers));
+						break;
+					case "c":
+						builder.cpus(Math.max(0, Math.min(MAX_CPUS, Integer.parseInt(value))));
+						break;
+					case "t":
+						builder.startTimestamp(Long.parseLong(value));
+						break;
+					case "z":
+						builder.zone(value.isEmpty() ? null : value);
+						break;
+					case "v":
+						builder.protocolVersion(Integer.parseInt(value));
+						break;
+					default:
+						// 新版本增加的字段
+						break;
+				}
+			} catch (NumberFormatException e) {
+				// 忽略格式错误的字段
+			}
+		}
+		return builder.build();
+	}
+
+	private static int clampWeight(int weight) {
+		return Math.max(0, Math.min(MAX_WEIGHT, weight));
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+}
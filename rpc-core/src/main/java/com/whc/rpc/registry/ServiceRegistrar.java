@@ -0,0 +1,83 @@
+package com.whc.rpc.registry;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端向注册中心注册服务
+ * 注册失败(注册中心暂时不可用等)时按指数退避重试, 直到注册成功或服务端关闭,
+ * 服务端不会在端口已经可以接受连接的情况下一直处于未注册的状态
+ * @ClassName: ServiceRegistrar
+ * @Author: whc
+ * @Date: 2021/07/09/20:30
+ */
+public class ServiceRegistrar {
+
+	private static final Logger logger = LoggerFactory.getLogger(ServiceRegistrar.class);
+
+	private static final long INITIAL_BACKOFF_MILLIS = 1000;
+	private static final long MAX_BACKOFF_MILLIS = 30000;
+
+	// 注册中心的 I/O 可能阻塞较长时间, 使用单独的线程, 不占用公共的 ForkJoinPool
+	static final ScheduledExecutorService EXECUTOR =
+			Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("rpc-registrar", true));
+
+	private final ServiceRegistry serviceRegistry;
+	private final InetSocketAddress address;
+	private final ServiceMetadata metadata;
+	private volatile boolean closed;
+
+	public ServiceRegistrar(ServiceRegistry serviceRegistry, InetSocketAddress address, ServiceMetadata metadata) {
+		this.serviceRegistry = serviceRegistry;
+		this.address = address;
+		this.metadata = metadata;
+	}
+
+	/**
+	 * 异步注册服务, 不阻塞调用线程
+	 */
+	public void register(List<String> serviceNames) {
+		register(serviceNames, INITIAL_BACKOFF_MILLIS);
+	}
+
+	/**
+	 * 服务端关闭后不再重试
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	private void register(List<String> serviceNames, long backoffMillis) {
+		if (closed) {
+			return;
+		}
+		CompletableFuture<Void> future;
+		try {
+			future = serviceRegistry.registerAll(serviceNames, address, metadata);
+		} catch (Throwable t) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(t);
+		}
+		future.whenComplete((v, cause) -> {
+			if (cause == null) {
+				logger.info("注册服务 {} 成功", serviceNames);
+				return;
+			}
+			if (closed) {
+				logger.warn("注册服务 {} 失败, 服务端已关闭, 不再重试", serviceNames, cause);
+				return;
+			}
+			logger.error("注册服务 {} 失败, {} 毫秒后重试", serviceNames, backoffMillis, cause);
+			EXECUTOR.schedule(() -> register(serviceNames, Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS)),
+					backoffMillis, TimeUnit.MILLISECONDS);
+		});
+	}
+}
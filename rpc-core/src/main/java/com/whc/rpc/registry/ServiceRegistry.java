@@ -1,6 +1,14 @@
 package com.whc.rpc.registry;
 
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.enumeration.RpcError;
+import com.whc.rpc.exception.RpcException;
+import com.whc.rpc.extension.ExtensionLoader;
+import com.whc.rpc.util.RpcConfig;
+
 import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 服务注册接口
@@ -11,10 +19,51 @@ import java.net.InetSocketAddress;
  */
 public interface ServiceRegistry {
 
+	String DEFAULT_REGISTRY = "zk";
+
 	/**
 	 * 将一个服务注册进注册表
 	 * @param serviceName 服务名称
 	 * @param inetSocketAddress 提供服务的地址
 	 */
-	void register(String serviceName, InetSocketAddress inetSocketAddress);
+	default void register(String serviceName, InetSocketAddress inetSocketAddress) {
+		register(serviceName, inetSocketAddress, ServiceMetadata.DEFAULT);
+	}
+
+	/**
+	 * 将一个服务连同服务提供者的元数据注册进注册表
+	 * @param serviceName 服务名称
+	 * @param inetSocketAddress 提供服务的地址
+	 * @param metadata 服务提供者的权重、容量等元数据
+	 */
+	void register(String serviceName, InetSocketAddress inetSocketAddress, ServiceMetadata metadata);
+
+	/**
+	 * 异步地批量注册同一个服务提供者的多个服务, 服务端在端口绑定之后调用
+	 * 默认在注册专用的线程上逐个调用 register, 注册中心可以覆盖为批量操作
+	 * @param serviceNames 服务名称
+	 * @param inetSocketAddress 提供服务的地址
+	 * @param metadata 服务提供者的元数据
+	 * @return 全部注册完成时结束的 future
+	 */
+	default CompletableFuture<Void> registerAll(List<String> serviceNames, InetSocketAddress inetSocketAddress, ServiceMetadata metadata) {
+		return CompletableFuture.runAsync(() -> {
+			for (String serviceName : serviceNames) {
+				register(serviceName, inetSocketAddress, metadata);
+			}
+		}, ServiceRegistrar.EXECUTOR);
+	}
+
+	/**
+	 * 获取配置文件中 rpc.registry 指定的注册中心, 未配置时使用 ZooKeeper
+	 * 注册中心在 META-INF/extensions/com.whc.rpc.registry.ServiceRegistry 中注册
+	 */
+	static ServiceRegistry getDefault() {
+		String name = RpcConfig.getProperty(RpcConfigEnum.REGISTRY, DEFAULT_REGISTRY);
+		ServiceRegistry serviceRegistry = ExtensionLoader.getExtensionLoader(ServiceRegistry.class).getExtension(name);
+		if (serviceRegistry == null) {
+			throw new RpcException(RpcError.EXTENSION_NOT_FOUND, "registry:" + name);
+		}
+		return serviceRegistry;
+	}
 }
@@ -3,14 +3,14 @@ package com.whc.rpc.registry.zk;
 import com.whc.rpc.enumeration.RpcError;
 import com.whc.rpc.exception.RpcException;
 import com.whc.rpc.loadbalance.LoadBalancer;
-import com.whc.rpc.loadbalance.loadbalancer.RandomLoadBalance;
+import com.whc.rpc.registry.ServiceChangeListener;
 import com.whc.rpc.registry.ServiceDiscovery;
+import com.whc.rpc.registry.ServiceEndpoint;
 import com.whc.rpc.registry.zk.util.CuratorUtils;
-import org.apache.curator.framework.CuratorFramework;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -31,27 +31,61 @@ public class ZKServiceDiscoveryImpl implements ServiceDiscovery {
 
 	public  ZKServiceDiscoveryImpl(LoadBalancer loadBalancer) {
 		if(loadBalancer == null) {
-			this.loadBalancer = new RandomLoadBalance();
+			this.loadBalancer = LoadBalancer.getDefault();
 		} else {
 			this.loadBalancer = loadBalancer;
 		}
 	}
 
+	/**
+	 * 从本地缓存的服务提供者列表中选择, 列表只在 zk 中的服务节点变化时重建
+	 */
 	@Override
-	public InetSocketAddress serviceDiscovery(String serviceName) {
-		CuratorFramework zkClient = CuratorUtils.getZkClient();
-		// 获取服务地址列表
-		List<String> serviceUrlList = CuratorUtils.getChildrenNodes(zkClient, serviceName);
-		if (serviceUrlList == null || serviceUrlList.size() == 0) {
+	public ServiceEndpoint serviceDiscovery(String serviceName) {
+		List<ServiceEndpoint> endpoints = CuratorUtils.getServiceEndpoints(serviceName);
+		if (endpoints == null || endpoints.size() == 0) {
 			throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName);
 		}
 
 		// 负载均衡
-		String targetServiceUrl = loadBalancer.balance(serviceUrlList);
-		logger.info("通过负载均衡策略,获取到服务地址:[{}]", targetServiceUrl);
-		String[] socketAddressArray = targetServiceUrl.split(":");
-		String host = socketAddressArray[0];
-		int port = Integer.parseInt(socketAddressArray[1]);
-		return new InetSocketAddress(host, port);
+		ServiceEndpoint endpoint = loadBalancer.balance(endpoints);
+		logger.debug("通过负载均衡策略,获取到服务地址:[{}]", endpoint);
+		return endpoint;
+	}
+
+	/**
+	 * 只在元数据中声明支持该序列化器的服务提供者中选择, 没有声明的服务提供者视为支持
+	 */
+	@Override
+	public ServiceEndpoint serviceDiscovery(String serviceName, int serializerCode) {
+		List<ServiceEndpoint> endpoints = CuratorUtils.getServiceEndpoints(serviceName);
+		if (endpoints == null || endpoints.size() == 0) {
+			throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName);
+		}
+		List<ServiceEndpoint> candidates = endpoints;
+		for (ServiceEndpoint endpoint : endpoints) {
+			if (!endpoint.getMetadata().supportsSerializer(serializerCode)) {
+				// 绝大多数情况下所有服务提供者都支持, 只在需要时才复制列表
+				candidates = new ArrayList<>(endpoints.size());
+				for (ServiceEndpoint candidate : endpoints) {
+					if (candidate.getMetadata().supportsSerializer(serializerCode)) {
+						candidates.add(candidate);
+					}
+				}
+				break;
+			}
+		}
+		if (candidates.isEmpty()) {
+			throw new RpcException(RpcError.SERVICE_NOT_FOUND, serviceName + " 没有支持序列化器 " + serializerCode + " 的服务提供者");
+		}
+
+		ServiceEndpoint endpoint = loadBalancer.balance(candidates);
+		logger.debug("通过负载均衡策略,获取到服务地址:[{}]", endpoint);
+		return endpoint;
+	}
+
+	@Override
+	public void addListener(ServiceChangeListener listener) {
+		CuratorUtils.addServiceChangeListener(listener);
 	}
 }
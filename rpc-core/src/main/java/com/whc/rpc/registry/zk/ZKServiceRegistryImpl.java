@@ -1,10 +1,14 @@
 package com.whc.rpc.registry.zk;
 
+import com.whc.rpc.registry.ServiceMetadata;
 import com.whc.rpc.registry.ServiceRegistry;
 import com.whc.rpc.registry.zk.util.CuratorUtils;
 import org.apache.curator.framework.CuratorFramework;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 服务注册实现类
@@ -14,15 +18,33 @@ import java.net.InetSocketAddress;
  */
 public class ZKServiceRegistryImpl implements ServiceRegistry {
 
+	/**
+	 * 服务地址节点的数据为服务提供者的元数据
+	 */
 	@Override
-	public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+	public void register(String serviceName, InetSocketAddress inetSocketAddress, ServiceMetadata metadata) {
 		// /MyRPC/com.whc.test.UserService
 		String servicePersistentPath = CuratorUtils.ZK_REGISTER_ROOT_PATH + "/" + serviceName;
 		String serviceEphemeralPath = servicePersistentPath + inetSocketAddress;
 		CuratorFramework zkClient = CuratorUtils.getZkClient();
 		// 创建服务名永久节点, 服务地址为临时节点
 		CuratorUtils.createPersistentNode(zkClient, servicePersistentPath);
-		CuratorUtils.createEphemeralNode(zkClient, serviceEphemeralPath);
+		CuratorUtils.createEphemeralNode(zkClient, serviceEphemeralPath, metadata.toBytes());
+	}
+
+	/**
+	 * 服务名永久节点并行异步创建, 服务地址临时节点在一个事务中创建, 见 CuratorUtils.registerServices
+	 */
+	@Override
+	public CompletableFuture<Void> registerAll(List<String> serviceNames, InetSocketAddress inetSocketAddress, ServiceMetadata metadata) {
+		List<String> servicePaths = new ArrayList<>(serviceNames.size());
+		List<String> ephemeralPaths = new ArrayList<>(serviceNames.size());
+		for (String serviceName : serviceNames) {
+			String servicePersistentPath = CuratorUtils.ZK_REGISTER_ROOT_PATH + "/" + serviceName;
+			servicePaths.add(servicePersistentPath);
+			ephemeralPaths.add(servicePersistentPath + inetSocketAddress);
+		}
+		return CuratorUtils.registerServices(servicePaths, ephemeralPaths, metadata.toBytes());
 	}
 
 }
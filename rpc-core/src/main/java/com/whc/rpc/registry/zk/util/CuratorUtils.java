@@ -1,25 +1,41 @@
 package com.whc.rpc.registry.zk.util;
 
 import com.whc.rpc.enumeration.RpcConfigEnum;
-import com.whc.rpc.util.PropertiesFileUtil;
+import com.whc.rpc.enumeration.RpcError;
+import com.whc.rpc.exception.RpcException;
+import com.whc.rpc.registry.ServiceChangeListener;
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.util.RpcConfig;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
-import org.apache.curator.framework.recipes.cache.PathChildrenCache;
-import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
-import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 创建Zk客户端类、创建节点、获取节点、监听节点工具类
@@ -34,10 +50,16 @@ public class CuratorUtils {
 	private static final int BASE_SLEEP_TIME = 1000;
 	private static final int MAX_RETRIES = 3;
 	public static final String ZK_REGISTER_ROOT_PATH = "/MyRPC";
-	// 客户端本地服务缓存
-	private static final Map<String, List<String>> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>();
+	// 后台连接 zk 失败后的重试间隔(毫秒)
+	private static final long RETRY_INTERVAL_MILLIS = 5000;
+	// 有本地快照时等待 zk 返回服务列表的最长时间(毫秒)
+	private static final long SNAPSHOT_WAIT_MILLIS = Math.max(0, RpcConfig.getLong(RpcConfigEnum.REGISTRY_SNAPSHOT_WAIT, 0));
+	// 服务列表变化后延迟发布的时间(毫秒), 期间的变化合并为一次发布
+	private static final long DEBOUNCE_MILLIS = Math.max(0, RpcConfig.getLong(RpcConfigEnum.REGISTRY_DEBOUNCE, 20));
+	// 客户端本地服务缓存: 服务名 -> 服务节点监听, 监听维护解析好的服务提供者列表
+	private static final Map<String, ServiceWatcher> SERVICE_WATCHER_MAP = new ConcurrentHashMap<>();
+	private static final Set<ServiceChangeListener> LISTENERS = new CopyOnWriteArraySet<>();
 	private static final Set<String> PERSISTENT_REGISTERED_PATH_SET = ConcurrentHashMap.newKeySet();
-	private static final Set<String> EPHEMERAL_REGISTERED_PATH_SET = ConcurrentHashMap.newKeySet();
 	private static CuratorFramework zkClient;
 	private static final String DEFAULT_ZOOKEEPER_ADDRESS = "127.0.0.1:2181";
 
@@ -57,78 +79,245 @@ public class CuratorUtils {
 			}
 			PERSISTENT_REGISTERED_PATH_SET.add(path);
 		} catch (Exception e) {
-			logger.error("创建永久节点失败[{}]", path);
+			logger.error("创建永久节点失败[{}]", path, e);
+			throw new RpcException(RpcError.REGISTER_SERVICE_FAILED, path);
 		}
 	}
 
-	// 创建服务地址为临时节点EPHEMERAL
+	// 创建服务地址为临时节点EPHEMERAL, 节点数据为服务提供者的元数据
 	// 临时节点，当客户端与 Zookeeper 之间的连接或者 session 断掉时会被zk自动删除。开源 Dubbo 框架，使用的就是临时节点
 	// 优点: 当服务节点下线或者服务节点不可用，Zookeeper 会自动将节点地址信息从注册中心删除
-	public static void createEphemeralNode(CuratorFramework zkClient, String path) {
+	public static void createEphemeralNode(CuratorFramework zkClient, String path, byte[] data) {
 		try {
-			// 临时节点已存在
-			if (EPHEMERAL_REGISTERED_PATH_SET.contains(path) || zkClient.checkExists().forPath(path) != null) {
-				logger.info("临时节点已经存在,临时节点是:[{}]", path);
+			Stat stat = zkClient.checkExists().forPath(path);
+			if (stat != null && stat.getEphemeralOwner() == zkClient.getZookeeperClient().getZooKeeper().getSessionId()) {
+				// 本会话创建的临时节点已存在, 更新元数据
+				zkClient.setData().forPath(path, data);
+				logger.info("临时节点已经存在,更新节点数据,临时节点是:[{}]", path);
 			} else {
+				if (stat != null) {
+					// 上一个进程的会话还未过期时留下的节点, 会随那个会话一起被删除, 需要由本会话重新创建
+					// 按版本删除, 节点已被那个会话删除或重建时不影响新的节点
+					try {
+						zkClient.delete().withVersion(stat.getVersion()).forPath(path);
+					} catch (KeeperException.NoNodeException | KeeperException.BadVersionException e) {
+						logger.info("其他会话的临时节点已经变化: [{}]", path);
+					}
+				}
 				// 临时节点不存在,则创建临时节点
 				//eg: /MyRPC/com.whc.rpc.api.UserService/127.0.0.1:9000
-				zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path);
+				zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path, data);
 				logger.info("临时节点成功被创建,临时节点是:[{}]", path);
 			}
-			EPHEMERAL_REGISTERED_PATH_SET.add(path);
 		} catch (Exception e) {
-			logger.error("创建临时节点失败[{}]", path);
+			logger.error("创建临时节点失败[{}]", path, e);
+			throw new RpcException(RpcError.REGISTER_SERVICE_FAILED, path);
 		}
 	}
 
-	// 获取一个节点下的孩子节点
-	public static List<String> getChildrenNodes(CuratorFramework zkClient, String rpcServiceName) {
-		if (SERVICE_ADDRESS_MAP.containsKey(rpcServiceName)) {
-			return SERVICE_ADDRESS_MAP.get(rpcServiceName);
+	/**
+	 * 批量注册服务, 不阻塞调用线程
+	 * 1. 并行地异步创建还不存在的服务名永久节点, 每个节点一次往返, 互不等待
+	 * 2. 在一个 zk 事务(multi)中创建所有服务地址临时节点, 一次往返, 要么全部可见要么全部不可见
+	 * 事务因为节点已存在(重复注册或上一个进程的节点还未过期)失败时, 退化为逐个创建
+	 * @param servicePaths 服务名永久节点
+	 * @param ephemeralPaths 服务地址临时节点
+	 * @param data 临时节点的数据
+	 * @return 全部注册完成时结束的 future
+	 */
+	public static CompletableFuture<Void> registerServices(List<String> servicePaths, List<String> ephemeralPaths, byte[] data) {
+		return CompletableFuture.supplyAsync(CuratorUtils::getZkClient, RegistryExecutors.BACKGROUND)
+				.thenCompose(zkClient -> createPersistentNodesAsync(zkClient, servicePaths)
+						.thenRunAsync(() -> createEphemeralNodes(zkClient, ephemeralPaths, data), RegistryExecutors.BACKGROUND));
+	}
+
+	private static CompletableFuture<Void> createPersistentNodesAsync(CuratorFramework zkClient, List<String> paths) {
+		List<CompletableFuture<Void>> futures = new ArrayList<>(paths.size());
+		for (String path : paths) {
+			if (PERSISTENT_REGISTERED_PATH_SET.contains(path)) {
+				continue;
+			}
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			try {
+				zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).inBackground((client, event) -> {
+					KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+					if (code == KeeperException.Code.OK || code == KeeperException.Code.NODEEXISTS) {
+						PERSISTENT_REGISTERED_PATH_SET.add(path);
+						future.complete(null);
+					} else {
+						future.completeExceptionally(KeeperException.create(code, path));
+					}
+				}).forPath(path);
+			} catch (Exception e) {
+				future.completeExceptionally(e);
+			}
+			futures.add(future);
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+	}
+
+	private static void createEphemeralNodes(CuratorFramework zkClient, List<String> paths, byte[] data) {
+		if (paths.isEmpty()) {
+			return;
 		}
-		List<String> result = null;
-		String servicePath = ZK_REGISTER_ROOT_PATH + "/" + rpcServiceName;
 		try {
-			result = zkClient.getChildren().forPath(servicePath);
-			SERVICE_ADDRESS_MAP.put(rpcServiceName, result);
-			// 动态发现服务节点的变化(监听),如果提供服务的服务端上下线,则重新更新服务器列表
-			registerWatcher(rpcServiceName, zkClient);
+			CuratorTransaction transaction = zkClient.inTransaction();
+			for (String path : paths) {
+				transaction = transaction.create().withMode(CreateMode.EPHEMERAL).forPath(path, data).and();
+			}
+			((CuratorTransactionFinal) transaction).commit();
+			logger.info("在一个事务中创建了 {} 个临时节点: {}", paths.size(), paths);
+		} catch (KeeperException.NodeExistsException e) {
+			logger.info("部分临时节点已经存在, 逐个注册: {}", paths);
+			for (String path : paths) {
+				createEphemeralNode(zkClient, path, data);
+			}
 		} catch (Exception e) {
-			logger.error("获取节点下的孩子节点 [{}] 失败", servicePath);
+			throw new RpcException(RpcError.REGISTER_SERVICE_FAILED, e.getMessage());
 		}
-		return result;
 	}
 
-	// 对节点进行注册监听, 用的是PathChildrenCache
-	private static void registerWatcher(String rpcServiceName, CuratorFramework zkClient) throws Exception {
+	/**
+	 * 获取服务的提供者列表
+	 * 已监听的服务直接返回最近一次发布的列表, 不访问 zk; 否则加载服务节点并注册监听
+	 * 每个服务只会注册一个监听, 并发的首次调用等待同一次加载
+	 * @return 不可修改的列表, 获取失败时返回 null
+	 */
+	public static List<ServiceEndpoint> getServiceEndpoints(String rpcServiceName) {
+		ServiceWatcher watcher = SERVICE_WATCHER_MAP.get(rpcServiceName);
+		if (watcher != null) {
+			List<ServiceEndpoint> endpoints = watcher.getPublished();
+			if (endpoints != null) {
+				return endpoints;
+			}
+		}
 		String servicePath = ZK_REGISTER_ROOT_PATH + "/" + rpcServiceName;
-		// 1. 创建监听对象
-		PathChildrenCache pathChildrenCache = new PathChildrenCache(zkClient, servicePath, true);
-
-		// 2. 绑定监听器
-		pathChildrenCache.getListenable().addListener(new PathChildrenCacheListener() {
-			@Override
-			public void childEvent(CuratorFramework curatorFramework, PathChildrenCacheEvent pathChildrenCacheEvent) throws Exception {
-				// 重新获取节点的孩子节点, 即重新获取服务列表信息
-				List<String> serviceAddresses = curatorFramework.getChildren().forPath(servicePath);
-				// 更新客户端本地服务缓存
-				SERVICE_ADDRESS_MAP.put(rpcServiceName, serviceAddresses);
-				logger.info("服务地址列表:{}", SERVICE_ADDRESS_MAP.get(rpcServiceName));
+		watcher = SERVICE_WATCHER_MAP.computeIfAbsent(rpcServiceName, k -> new ServiceWatcher(k, servicePath,
+				RegistryExecutors.NOTIFY, DEBOUNCE_MILLIS, CuratorUtils::publish));
+		// 本地快照中有该服务时在后台连接 zk 并开始监听, 默认直接使用快照中的列表, zk 返回后再覆盖
+		// 配置了 SNAPSHOT_WAIT_MILLIS 时最多等待这么久, zk 没有及时返回才使用快照, 注意 zk 不可用时每个服务的首次查询都要等待
+		RegistrySnapshot snapshot = SnapshotHolder.SNAPSHOT;
+		List<ServiceEndpoint> cached = snapshot == null ? null : snapshot.get(rpcServiceName);
+		if (cached != null) {
+			if (watcher.seed(cached)) {
+				CompletableFuture<List<ServiceEndpoint>> started = startInBackground(watcher);
+				if (SNAPSHOT_WAIT_MILLIS > 0) {
+					try {
+						return started.get(SNAPSHOT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException | ExecutionException e) {
+						logger.info("zk 未及时返回服务 [{}] 的列表, 使用本地快照: {}", rpcServiceName, cached);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+			List<ServiceEndpoint> endpoints = watcher.getPublished();
+			if (endpoints != null) {
+				return endpoints;
+			}
+		}
+		try {
+			// 动态发现服务节点的变化(监听),如果提供服务的服务端上下线,则增量更新服务器列表
+			return watcher.start(getZkClient());
+		} catch (Exception e) {
+			logger.error("获取节点下的孩子节点 [{}] 失败", servicePath, e);
+			// 下次调用重新加载
+			SERVICE_WATCHER_MAP.remove(rpcServiceName, watcher);
+			return null;
+		}
+	}
+
+	/**
+	 * 在后台连接 zk 并开始监听, 失败时每隔 RETRY_INTERVAL_MILLIS 重试, 期间继续使用快照中的列表
+	 * @return 第一次尝试的结果
+	 */
+	private static CompletableFuture<List<ServiceEndpoint>> startInBackground(ServiceWatcher watcher) {
+		CompletableFuture<List<ServiceEndpoint>> future = new CompletableFuture<>();
+		RegistryExecutors.BACKGROUND.execute(() -> {
+			try {
+				future.complete(watcher.start(getZkClient()));
+			} catch (Exception e) {
+				logger.warn("连接 zk 获取服务列表失败, {}ms 后重试", RETRY_INTERVAL_MILLIS, e);
+				RegistryExecutors.NOTIFY.schedule(() -> startInBackground(watcher), RETRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				future.completeExceptionally(e);
 			}
 		});
+		return future;
+	}
+
+	/**
+	 * 订阅服务提供者列表的变化
+	 */
+	public static void addServiceChangeListener(ServiceChangeListener listener) {
+		LISTENERS.add(listener);
+	}
+
+	/**
+	 * 发布服务的最新列表, 计算与上一次列表的差异并通知监听器
+	 */
+	private static void publish(String rpcServiceName, List<ServiceEndpoint> previous, List<ServiceEndpoint> current) {
+		List<ServiceEndpoint> added = new ArrayList<>(current);
+		added.removeAll(new HashSet<>(previous));
+		List<ServiceEndpoint> removed = new ArrayList<>(previous);
+		removed.removeAll(new HashSet<>(current));
+		// 只有元数据变化时也需要更新快照
+		RegistrySnapshot snapshot = SnapshotHolder.SNAPSHOT;
+		if (snapshot != null) {
+			snapshot.update(rpcServiceName, current);
+		}
+		if (added.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+		logger.info("服务 [{}] 地址列表:{}, 上线:{}, 下线:{}", rpcServiceName, current, added, removed);
+		for (ServiceChangeListener listener : LISTENERS) {
+			try {
+				listener.onChange(rpcServiceName, current, added, removed);
+			} catch (Exception e) {
+				logger.error("服务列表变化监听器执行失败", e);
+			}
+		}
+	}
 
-		// 3. 开启
-		pathChildrenCache.start();
+	// 第一次监听或注册服务时才创建的线程
+	private static class RegistryExecutors {
+		// 发布服务列表、写快照和通知监听器
+		private static final ScheduledExecutorService NOTIFY =
+				Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("rpc-registry-notify", true));
+		// 后台连接 zk 和注册服务, 可能阻塞较长时间, 不占用通知线程
+		private static final ExecutorService BACKGROUND =
+				Executors.newSingleThreadExecutor(new DefaultThreadFactory("rpc-registry-background", true));
 	}
 
-	public static CuratorFramework getZkClient() {
-		// 检查是否设置过zk地址
-		Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
-		String zookeeperAddress = properties != null && properties.getProperty(RpcConfigEnum.ZK_ADDRESS.getPropertyValue()) != null ? properties.getProperty(RpcConfigEnum.ZK_ADDRESS.getPropertyValue()) : DEFAULT_ZOOKEEPER_ADDRESS;
+	// 本地服务列表快照, 第一次获取服务列表时加载, rpc.registry.snapshot 配置为空时不使用快照
+	private static class SnapshotHolder {
+		private static final RegistrySnapshot SNAPSHOT = loadSnapshot();
+
+		private static RegistrySnapshot loadSnapshot() {
+			String path = RpcConfig.getProperty(RpcConfigEnum.REGISTRY_SNAPSHOT);
+			if (path == null) {
+				// 默认按 zk 地址区分快照文件, 连接不同注册中心的客户端互不影响
+				path = System.getProperty("user.home") + File.separator + ".myrpc" + File.separator
+						+ "registry-" + zookeeperAddress().replaceAll("[^0-9A-Za-z.\\-]", "_") + ".properties";
+			}
+			return path.isEmpty() ? null : RegistrySnapshot.load(Paths.get(path));
+		}
+	}
+
+	// zk地址, 系统属性优先于配置文件(便于测试时指向内嵌的zk)
+	private static String zookeeperAddress() {
+		return RpcConfig.getProperty(RpcConfigEnum.ZK_ADDRESS, DEFAULT_ZOOKEEPER_ADDRESS);
+	}
+
+	/**
+	 * 获取已连接的zk客户端, 首次调用时建立连接, 最多等待30秒
+	 * 并发的调用共用同一个客户端
+	 */
+	public static synchronized CuratorFramework getZkClient() {
 		// 如果zkClient已经设置过,立即返回
 		if (zkClient != null && zkClient.getState() == CuratorFrameworkState.STARTED) {
 			return zkClient;
 		}
+		String zookeeperAddress = zookeeperAddress();
 		// 重试策略
 		RetryPolicy retryPolicy = new ExponentialBackoffRetry(BASE_SLEEP_TIME, MAX_RETRIES);
 		zkClient = CuratorFrameworkFactory.builder()
@@ -136,13 +325,18 @@ public class CuratorUtils {
 				.retryPolicy(retryPolicy)
 				.build();
 		zkClient.start();
+		boolean connected = false;
 		try {
 			// 等待30秒直到连接上zk
-			if (!zkClient.blockUntilConnected(30, TimeUnit.SECONDS)) {
-				throw new RuntimeException("连接ZK超时!");
-			}
+			connected = zkClient.blockUntilConnected(30, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
+		}
+		if (!connected) {
+			// 没有连接上的客户端不保留, 下次调用重新创建, 不会拿到已启动但从未连接成功的客户端
+			zkClient.close();
+			zkClient = null;
+			throw new RuntimeException("连接ZK超时!");
 		}
 		return zkClient;
 	}
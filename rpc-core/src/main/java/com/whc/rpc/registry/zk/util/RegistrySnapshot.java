@@ -0,0 +1,148 @@
+package com.whc.rpc.registry.zk.util;
+
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.ServiceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务列表的本地快照文件
+ * 客户端启动时先用快照中的服务列表提供服务, 不必等待 zk 连接; zk 上的列表发布后再覆盖快照
+ * 文件格式为 properties, 每个服务提供者一行: 服务名/地址=元数据
+ * 写入时先写临时文件再原子地替换, 进程在写入过程中退出也不会留下不完整的快照
+ * @ClassName: RegistrySnapshot
+ * @Author: whc
+ * @Date: 2021/07/05/21:10
+ */
+class RegistrySnapshot {
+
+	private static final Logger logger = LoggerFactory.getLogger(RegistrySnapshot.class);
+
+	private final Path file;
+	// 服务名 -> 快照中的服务提供者列表(不可修改)
+	private final Map<String, List<ServiceEndpoint>> services = new ConcurrentHashMap<>();
+
+	private RegistrySnapshot(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * 读取快照文件, 文件不存在或读取失败时得到空的快照
+	 */
+	static RegistrySnapshot load(Path file) {
+		RegistrySnapshot snapshot = new RegistrySnapshot(file);
+		if (!Files.isRegularFile(file)) {
+			return snapshot;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		} catch (IOException e) {
+			logger.warn("读取服务列表快照 [{}] 失败", file, e);
+			return snapshot;
+		}
+		Map<String, List<ServiceEndpoint>> services = new HashMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			int index = key.lastIndexOf('/');
+			if (index <= 0) {
+				continue;
+			}
+			try {
+				ServiceEndpoint endpoint = ServiceEndpoint.parse(key.substring(index + 1), ServiceMetadata.parse(properties.getProperty(key)));
+				services.computeIfAbsent(key.substring(0, index), k -> new ArrayList<>()).add(endpoint);
+			} catch (IllegalArgumentException e) {
+				logger.warn("忽略快照中格式错误的服务地址: {}", key);
+			}
+		}
+		for (Map.Entry<String, List<ServiceEndpoint>> entry : services.entrySet()) {
+			snapshot.services.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+		}
+		logger.info("从快照 [{}] 加载了 {} 个服务的服务列表", file, snapshot.services.size());
+		return snapshot;
+	}
+
+	List<ServiceEndpoint> get(String serviceName) {
+		return services.get(serviceName);
+	}
+
+	/**
+	 * 更新服务的列表并写回文件, 列表为空时从快照中删除该服务
+	 * 服务提供者和元数据都没有变化时不写文件
+	 */
+	synchronized void update(String serviceName, List<ServiceEndpoint> endpoints) {
+		if (sameEndpoints(services.get(serviceName), endpoints)) {
+			return;
+		}
+		if (endpoints.isEmpty()) {
+			if (services.remove(serviceName) == null) {
+				return;
+			}
+		} else {
+			services.put(serviceName, endpoints);
+		}
+		try {
+			write();
+		} catch (IOException e) {
+			logger.warn("写入服务列表快照 [{}] 失败", file, e);
+		}
+	}
+
+	private void write() throws IOException {
+		Properties properties = new Properties();
+		for (Map.Entry<String, List<ServiceEndpoint>> entry : services.entrySet()) {
+			for (ServiceEndpoint endpoint : entry.getValue()) {
+				properties.setProperty(entry.getKey() + "/" + endpoint.getAddress(), endpoint.getMetadata().encode());
+			}
+		}
+		Path dir = file.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		// 临时文件与快照在同一目录, 保证可以原子地重命名
+		Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				properties.store(out, "MyRPC registry snapshot");
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static boolean sameEndpoints(List<ServiceEndpoint> previous, List<ServiceEndpoint> current) {
+		if (previous == null) {
+			return current.isEmpty();
+		}
+		if (previous.size() != current.size()) {
+			return false;
+		}
+		Map<String, ServiceMetadata> metadata = new HashMap<>();
+		for (ServiceEndpoint endpoint : previous) {
+			metadata.put(endpoint.getAddress(), endpoint.getMetadata());
+		}
+		for (ServiceEndpoint endpoint : current) {
+			if (!endpoint.getMetadata().equals(metadata.get(endpoint.getAddress()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
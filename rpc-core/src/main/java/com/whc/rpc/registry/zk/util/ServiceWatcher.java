@@ -0,0 +1,168 @@
+package com.whc.rpc.registry.zk.util;
+
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.ServiceMetadata;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.utils.ZKPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个服务的服务节点监听
+ * 服务提供者列表由 PathChildrenCache 的增加、删除、更新事件增量维护, 不再在每个事件后重新 getChildren
+ * 节点数据(服务提供者的元数据)随事件一起到达, 更新事件只替换对应的服务提供者
+ * 一批事件中的第一个事件到达后延迟 debounceMillis 发布一次快照, 期间到达的事件合并到同一次发布中,
+ * 持续变化时每 debounceMillis 至少发布一次, 滚动发布时不会产生大量的快照重建和监听器通知
+ * @ClassName: ServiceWatcher
+ * @Author: whc
+ * @Date: 2021/07/04/15:40
+ */
+class ServiceWatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(ServiceWatcher.class);
+
+	private final String rpcServiceName;
+	private final String servicePath;
+	private final ScheduledExecutorService scheduler;
+	private final long debounceMillis;
+	// 发布快照的回调, 参数为变化前后的列表
+	private final SnapshotPublisher publisher;
+
+	// 节点名 -> 服务提供者, 只在 PathChildrenCache 的事件线程中修改
+	private final Map<String, ServiceEndpoint> live = new ConcurrentHashMap<>();
+	// 是否已经安排了一次发布
+	private final AtomicBoolean publishScheduled = new AtomicBoolean();
+	private PathChildrenCache cache;
+	// 最近一次发布的列表(开始监听前可能是快照中的列表), 只在持有锁时修改
+	private volatile List<ServiceEndpoint> published;
+
+	ServiceWatcher(String rpcServiceName, String servicePath, ScheduledExecutorService scheduler, long debounceMillis, SnapshotPublisher publisher) {
+		this.rpcServiceName = rpcServiceName;
+		this.servicePath = servicePath;
+		this.scheduler = scheduler;
+		this.debounceMillis = debounceMillis;
+		this.publisher = publisher;
+	}
+
+	/**
+	 * 同步加载服务节点并开始监听, 只有第一次调用会访问 zk, 并发的调用等待第一次调用完成
+	 * @return 服务提供者列表
+	 */
+	synchronized List<ServiceEndpoint> start(CuratorFramework zkClient) throws Exception {
+		if (cache != null) {
+			return published;
+		}
+		PathChildrenCache pathChildrenCache = new PathChildrenCache(zkClient, servicePath, true);
+		pathChildrenCache.getListenable().addListener((client, event) -> onEvent(event));
+		try {
+			// 启动时同步构建缓存, 初始的服务节点不会再产生增加事件
+			pathChildrenCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+		} catch (Exception e) {
+			pathChildrenCache.close();
+			throw e;
+		}
+		for (ChildData childData : pathChildrenCache.getCurrentData()) {
+			apply(childData, true);
+		}
+		cache = pathChildrenCache;
+		publish();
+		return published;
+	}
+
+	/**
+	 * 在开始监听之前先使用本地快照中的列表, 开始监听后发布的列表会替换它
+	 * @return 是否使用了快照, 已经有列表时返回 false
+	 */
+	synchronized boolean seed(List<ServiceEndpoint> endpoints) {
+		if (published != null) {
+			return false;
+		}
+		published = endpoints;
+		return true;
+	}
+
+	List<ServiceEndpoint> getPublished() {
+		return published;
+	}
+
+	void close() {
+		if (cache != null) {
+			try {
+				cache.close();
+			} catch (Exception e) {
+				logger.warn("关闭服务 [{}] 的监听失败", rpcServiceName, e);
+			}
+		}
+	}
+
+	private void onEvent(PathChildrenCacheEvent event) {
+		switch (event.getType()) {
+			case CHILD_ADDED:
+			case CHILD_UPDATED:
+				apply(event.getData(), true);
+				break;
+			case CHILD_REMOVED:
+				apply(event.getData(), false);
+				break;
+			default:
+				// 连接断开时保留现有的列表, 重连后 PathChildrenCache 会自行刷新并产生增量事件
+				return;
+		}
+		schedulePublish();
+	}
+
+	private void apply(ChildData childData, boolean present) {
+		String node = ZKPaths.getNodeFromPath(childData.getPath());
+		if (!present) {
+			live.remove(node);
+			return;
+		}
+		try {
+			live.put(node, ServiceEndpoint.parse(node, ServiceMetadata.parse(childData.getData())));
+		} catch (IllegalArgumentException e) {
+			logger.warn("忽略格式错误的服务节点: {}", node);
+		}
+	}
+
+	private void schedulePublish() {
+		// 已经安排了发布, 本次变化合并到那次发布中
+		if (!publishScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		if (debounceMillis <= 0) {
+			scheduler.execute(this::publish);
+		} else {
+			scheduler.schedule(this::publish, debounceMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private synchronized void publish() {
+		// 先清除标记再读取, 读取之后到达的事件会安排下一次发布
+		publishScheduled.set(false);
+		List<ServiceEndpoint> previous = published;
+		List<ServiceEndpoint> current = Collections.unmodifiableList(new ArrayList<>(live.values()));
+		published = current;
+		try {
+			publisher.publish(rpcServiceName, previous == null ? Collections.emptyList() : previous, current);
+		} catch (Throwable t) {
+			logger.error("发布服务 [{}] 的服务列表失败", rpcServiceName, t);
+		}
+	}
+
+	interface SnapshotPublisher {
+
+		void publish(String rpcServiceName, List<ServiceEndpoint> previous, List<ServiceEndpoint> current);
+	}
+}
@@ -0,0 +1,29 @@
+package com.whc.rpc.serializer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 支持直接读写 Netty ByteBuf 的序列化器
+ * 编码时直接把对象写入出站的(池化、直接内存)ByteBuf,解码时直接从入站的数据帧中读取,
+ * 省去中间 byte[] 的分配与拷贝
+ * @ClassName: ByteBufSerializer
+ * @Author: whc
+ * @Date: 2021/06/20/15:12
+ */
+public interface ByteBufSerializer extends CommonSerializer {
+
+	/**
+	 * 将对象序列化后直接写入 out, 从 out 当前的 writerIndex 开始写
+	 * @param obj 待序列化对象
+	 * @param out 出站 ByteBuf
+	 */
+	void serialize(Object obj, ByteBuf out);
+
+	/**
+	 * 直接从 in 中反序列化对象, in 的可读部分即为完整的数据
+	 * @param in 入站数据
+	 * @param clazz 目标类型
+	 * @return 反序列化得到的对象
+	 */
+	Object deserialize(ByteBuf in, Class<?> clazz);
+}
@@ -1,5 +1,9 @@
 package com.whc.rpc.serializer;
 
+import com.whc.rpc.extension.ExtensionLoader;
+
+import java.lang.reflect.Type;
+
 /**
  * @ClassName: CommonSerializer
  * @Author: whc
@@ -11,22 +15,25 @@ public interface CommonSerializer {
 	Integer JSON_SERIALIZER = 1;
 	Integer HESSIAN_SERIALIZER = 2;
 	Integer PROTOBUF_SERIALIZER = 3;
+	Integer GENERATED_SERIALIZER = 4;
 
 	Integer DEFAULT_SERIALIZER = KRYO_SERIALIZER;
 
+	/**
+	 * 获取序列化器, 返回的是缓存的单例, 序列化器实现需要是线程安全的
+	 * 序列化器在 META-INF/extensions/com.whc.rpc.serializer.CommonSerializer 中注册
+	 * @return 序列化器, 找不到时返回 null
+	 */
 	static CommonSerializer getByCode(int code) {
-		switch (code) {
-			case 0:
-				return new KryoSerializer();
-			case 1:
-				return new JsonSerializer();
-			case 2:
-				return new HessianSerializer();
-			case 3:
-				return new ProtobufSerializer();
-			default:
-				return null;
-		}
+		return SerializerRegistry.get(code);
+	}
+
+	/**
+	 * @param name 扩展名称, eg: kryo
+	 * @return 序列化器, 找不到时返回 null
+	 */
+	static CommonSerializer getByName(String name) {
+		return ExtensionLoader.getExtensionLoader(CommonSerializer.class).getExtension(name);
 	}
 
 	byte[] serialize(Object obj);
@@ -34,4 +41,14 @@ public interface CommonSerializer {
 	Object deserialize(byte[] bytes, Class<?> clazz);
 
 	int getCode();
+
+	/**
+	 * 将响应数据绑定为调用方法的返回值类型
+	 * 自带类型信息的序列化器反序列化出的已经是目标类型, 直接返回; JSON 等需要按类型绑定的序列化器覆盖该方法
+	 * @param data 反序列化得到的响应数据
+	 * @param type 方法的(泛型)返回值类型
+	 */
+	default Object bindResult(Object data, Type type) {
+		return data;
+	}
 }
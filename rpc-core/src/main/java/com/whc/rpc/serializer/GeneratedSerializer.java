@@ -0,0 +1,264 @@
+package com.whc.rpc.serializer;
+
+import com.whc.rpc.codegen.CodecInput;
+import com.whc.rpc.codegen.CodecOutput;
+import com.whc.rpc.codegen.CodecRegistry;
+import com.whc.rpc.codegen.GeneratedCodec;
+import com.whc.rpc.enumeration.SerializerCode;
+import com.whc.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 使用编译期生成的编解码器的序列化器
+ * 被 @RpcCodec 标记的类在编译时生成读写代码, 序列化时不需要反射和运行时 schema, 直接读写 ByteBuf
+ * 通信双方需要为同样的类生成编解码器, 找不到编解码器时抛出 SerializeException
+ * @ClassName: GeneratedSerializer
+ * @Author: whc
+ * @Date: 2021/06/28/22:05
+ */
+public class GeneratedSerializer implements ByteBufSerializer {
+
+	@Override
+	public byte[] serialize(Object obj) {
+		ByteBuf out = Unpooled.buffer();
+		serialize(obj, out);
+		return ByteBufUtil.getBytes(out, out.readerIndex(), out.readableBytes(), false);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void serialize(Object obj, ByteBuf out) {
+		GeneratedCodec<Object> codec = (GeneratedCodec<Object>) getCodec(obj.getClass());
+		try {
+			codec.write(obj, new ByteBufCodecOutput(out));
+		} catch (RuntimeException e) {
+			throw new SerializeException("序列化时有错误发生: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes, Class<?> clazz) {
+		return deserialize(Unpooled.wrappedBuffer(bytes), clazz);
+	}
+
+	@Override
+	public Object deserialize(ByteBuf in, Class<?> clazz) {
+		GeneratedCodec<?> codec = getCodec(clazz);
+		try {
+			return codec.read(new ByteBufCodecInput(in));
+		} catch (RuntimeException e) {
+			throw new SerializeException("反序列化时有错误发生: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public int getCode() {
+		return SerializerCode.valueOf("GENERATED").getCode();
+	}
+
+	private static GeneratedCodec<?> getCodec(Class<?> clazz) {
+		GeneratedCodec<?> codec = CodecRegistry.getCodec(clazz);
+		if (codec == null) {
+			throw new SerializeException("没有为 " + clazz.getName() + " 生成编解码器, 请使用 @RpcCodec 标记该类");
+		}
+		return codec;
+	}
+
+	/**
+	 * 写入 ByteBuf 的输出, 整数为 zigzag varint, 字符串和字节数组以 长度+1 开头, 0 表示 null
+	 */
+	private static final class ByteBufCodecOutput implements CodecOutput {
+
+		private final ByteBuf out;
+
+		ByteBufCodecOutput(ByteBuf out) {
+			this.out = out;
+		}
+
+		@Override
+		public void writeBoolean(boolean value) {
+			out.writeBoolean(value);
+		}
+
+		@Override
+		public void writeByte(byte value) {
+			out.writeByte(value);
+		}
+
+		@Override
+		public void writeShort(short value) {
+			writeInt(value);
+		}
+
+		@Override
+		public void writeChar(char value) {
+			writeVarInt(value);
+		}
+
+		@Override
+		public void writeInt(int value) {
+			writeVarInt((value << 1) ^ (value >> 31));
+		}
+
+		@Override
+		public void writeLong(long value) {
+			long zigzag = (value << 1) ^ (value >> 63);
+			while ((zigzag & ~0x7FL) != 0) {
+				out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+				zigzag >>>= 7;
+			}
+			out.writeByte((int) zigzag);
+		}
+
+		@Override
+		public void writeFloat(float value) {
+			out.writeFloat(value);
+		}
+
+		@Override
+		public void writeDouble(double value) {
+			out.writeDouble(value);
+		}
+
+		@Override
+		public void writeString(String value) {
+			if (value == null) {
+				writeVarInt(0);
+				return;
+			}
+			writeVarInt(ByteBufUtil.utf8Bytes(value) + 1);
+			ByteBufUtil.writeUtf8(out, value);
+		}
+
+		@Override
+		public void writeBytes(byte[] value) {
+			if (value == null) {
+				writeVarInt(0);
+				return;
+			}
+			writeVarInt(value.length + 1);
+			out.writeBytes(value);
+		}
+
+		private void writeVarInt(int value) {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+	}
+
+	private static final class ByteBufCodecInput implements CodecInput {
+
+		private final ByteBuf in;
+
+		ByteBufCodecInput(ByteBuf in) {
+			this.in = in;
+		}
+
+		@Override
+		public boolean readBoolean() {
+			return in.readBoolean();
+		}
+
+		@Override
+		public byte readByte() {
+			return in.readByte();
+		}
+
+		@Override
+		public short readShort() {
+			return (short) readInt();
+		}
+
+		@Override
+		public char readChar() {
+			return (char) readVarInt();
+		}
+
+		@Override
+		public int readInt() {
+			int value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		@Override
+		public long readLong() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = in.readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return (value >>> 1) ^ -(value & 1);
+				}
+			}
+			throw new SerializeException("malformed varint");
+		}
+
+		@Override
+		public float readFloat() {
+			return in.readFloat();
+		}
+
+		@Override
+		public double readDouble() {
+			return in.readDouble();
+		}
+
+		@Override
+		public String readString() {
+			int prefix = readVarInt();
+			if (prefix == 0) {
+				return null;
+			}
+			int length = checkLength(prefix - 1);
+			String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+			in.skipBytes(length);
+			return value;
+		}
+
+		@Override
+		public byte[] readBytes() {
+			int prefix = readVarInt();
+			if (prefix == 0) {
+				return null;
+			}
+			int length = checkLength(prefix - 1);
+			byte[] value = new byte[length];
+			in.readBytes(value);
+			return value;
+		}
+
+		@Override
+		public int readSize() {
+			return checkLength(readInt());
+		}
+
+		/**
+		 * 长度来自网络数据, 分配内存或循环之前先与剩余可读字节数比较, 损坏或恶意的数据不会导致 OOM
+		 */
+		private int checkLength(int length) {
+			if (length < 0 || length > in.readableBytes()) {
+				throw new SerializeException("数据长度 " + length + " 超出剩余的 " + in.readableBytes() + " 字节");
+			}
+			return length;
+		}
+
+		private int readVarInt() {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				byte b = in.readByte();
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new SerializeException("malformed varint");
+		}
+	}
+}
@@ -4,6 +4,9 @@ import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 import com.whc.rpc.enumeration.SerializerCode;
 import com.whc.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,7 +20,7 @@ import java.io.IOException;
  * @Author: whc
  * @Date: 2021/05/29/20:52
  */
-public class HessianSerializer implements CommonSerializer {
+public class HessianSerializer implements ByteBufSerializer {
 
 	private static final Logger logger = LoggerFactory.getLogger(HessianSerializer.class);
 
@@ -42,6 +45,24 @@ public class HessianSerializer implements CommonSerializer {
 		}
 	}
 
+	@Override
+	public void serialize(Object obj, ByteBuf out) {
+		HessianOutput hessianOutput = new HessianOutput(new ByteBufOutputStream(out));
+		try {
+			hessianOutput.writeObject(obj);
+			hessianOutput.flush();
+		} catch (IOException e) {
+			logger.error("序列化时有错误发生", e);
+			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			try {
+				hessianOutput.close();
+			} catch (IOException e) {
+				logger.error("关闭流时有错误发生:", e);
+			}
+		}
+	}
+
 	@Override
 	public Object deserialize(byte[] bytes, Class<?> clazz) {
 		HessianInput hessianInput = null;
@@ -58,6 +79,19 @@ public class HessianSerializer implements CommonSerializer {
 		}
 	}
 
+	@Override
+	public Object deserialize(ByteBuf in, Class<?> clazz) {
+		HessianInput hessianInput = new HessianInput(new ByteBufInputStream(in));
+		try {
+			return hessianInput.readObject();
+		} catch (IOException e) {
+			logger.error("序列化时有错误发生:", e);
+			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			hessianInput.close();
+		}
+	}
+
 	@Override
 	public int getCode() {
 		return SerializerCode.valueOf("HESSIAN").getCode();
@@ -1,28 +1,55 @@
 package com.whc.rpc.serializer;
 
-import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.whc.rpc.entity.RpcRequest;
+import com.whc.rpc.entity.RpcResponse;
 import com.whc.rpc.enumeration.SerializerCode;
 import com.whc.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 使用JSON格式的序列化器
+ * 请求先写参数类型再写参数, 反序列化时按声明的参数类型直接解析每个参数;
+ * 响应数据先保留为 TokenBuffer, 由客户端按方法的(泛型)返回值类型绑定, 见 bindResult
  * @ClassName: JsonSerializer
  * @Author: whc
  * @Date: 2021/05/29/20:51
  */
-public class JsonSerializer implements CommonSerializer{
+public class JsonSerializer implements ByteBufSerializer {
 
 	private static final Logger logger = LoggerFactory.getLogger(JsonSerializer.class);
 
-	private ObjectMapper objectMapper = new ObjectMapper();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@SuppressWarnings("unchecked")
+	public JsonSerializer() {
+		SimpleModule module = new SimpleModule("rpc");
+		module.addSerializer(RpcRequest.class, new RpcRequestSerializer());
+		module.addDeserializer(RpcRequest.class, new RpcRequestDeserializer());
+		module.addDeserializer(RpcResponse.class, new RpcResponseDeserializer());
+		objectMapper.registerModule(module);
+	}
 
 	@Override
 	public byte[] serialize(Object obj) {
@@ -35,39 +62,226 @@ public class JsonSerializer implements CommonSerializer{
 		}
 	}
 
+	@Override
+	public void serialize(Object obj, ByteBuf out) {
+		try {
+			// 对象直接写入ByteBuf
+			objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), obj);
+		} catch (IOException e) {
+			logger.error("序列化时有错误发生:", e);
+			throw new SerializeException("序列化时有错误发生");
+		}
+	}
+
 	@Override
 	public Object deserialize(byte[] bytes, Class<?> clazz) {
 		try {
 			// byte数组转对象
-			Object obj = objectMapper.readValue(bytes, clazz);
-			if(obj instanceof RpcRequest) {
-				obj = handleRequest(obj);
-			}
-			return obj;
+			return objectMapper.readValue(bytes, clazz);
 		} catch (IOException e) {
 			logger.error("序列化时有错误发生:", e);
 			throw new SerializeException("序列化时有错误发生");
 		}
 	}
 
-	/**
-	 *  由于这里使用JSON序列化和反序列化时Object数组,无法保证反序列化时后仍然为原实例类型
-	 *  需要重新判断处理
-	 */
-	private Object handleRequest(Object obj) throws IOException {
-		RpcRequest rpcRequest = (RpcRequest)obj;
-		for (int i = 0; i < rpcRequest.getParamTypes().length; i++) {
-			Class<?> clazz = rpcRequest.getParamTypes()[i];
-			if(!clazz.isAssignableFrom(rpcRequest.getParameters()[i].getClass())) {
-				byte[] bytes = objectMapper.writeValueAsBytes(rpcRequest.getParameters()[i]);
-				rpcRequest.getParameters()[i] = objectMapper.readValue(bytes, clazz);
-			}
+	@Override
+	public Object deserialize(ByteBuf in, Class<?> clazz) {
+		try {
+			// 直接从ByteBuf流式解析
+			return objectMapper.readValue((InputStream) new ByteBufInputStream(in), clazz);
+		} catch (IOException e) {
+			logger.error("序列化时有错误发生:", e);
+			throw new SerializeException("序列化时有错误发生");
+		}
+	}
+
+	@Override
+	public Object bindResult(Object data, Type type) {
+		if (!(data instanceof TokenBuffer)) {
+			return data;
+		}
+		try (JsonParser parser = ((TokenBuffer) data).asParser(objectMapper)) {
+			return objectMapper.readValue(parser, objectMapper.constructType(type));
+		} catch (IOException e) {
+			logger.error("序列化时有错误发生:", e);
+			throw new SerializeException("序列化时有错误发生");
 		}
-		return rpcRequest;
 	}
 
 	@Override
 	public int getCode() {
 		return SerializerCode.valueOf("JSON").getCode();
 	}
+
+	/**
+	 * 按 requestId、interfaceName、methodName、methodId、paramTypes、parameters 的顺序写出请求,
+	 * 保证反序列化时先读到参数类型
+	 */
+	private static class RpcRequestSerializer extends StdSerializer<RpcRequest> {
+
+		RpcRequestSerializer() {
+			super(RpcRequest.class);
+		}
+
+		@Override
+		public void serialize(RpcRequest rpcRequest, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject();
+			gen.writeNumberField("requestId", rpcRequest.getRequestId());
+			gen.writeStringField("interfaceName", rpcRequest.getInterfaceName());
+			gen.writeStringField("methodName", rpcRequest.getMethodName());
+			gen.writeNumberField("methodId", rpcRequest.getMethodId());
+			gen.writeFieldName("paramTypes");
+			if (rpcRequest.getParamTypes() == null) {
+				gen.writeNull();
+			} else {
+				gen.writeStartArray();
+				for (Class<?> paramType : rpcRequest.getParamTypes()) {
+					gen.writeString(paramType.getName());
+				}
+				gen.writeEndArray();
+			}
+			gen.writeFieldName("parameters");
+			if (rpcRequest.getParameters() == null) {
+				gen.writeNull();
+			} else {
+				gen.writeStartArray();
+				for (Object parameter : rpcRequest.getParameters()) {
+					provider.defaultSerializeValue(parameter, gen);
+				}
+				gen.writeEndArray();
+			}
+			gen.writeEndObject();
+		}
+	}
+
+	/**
+	 * 按声明的参数类型直接解析每个参数, 不再先解析成 Map 再转换
+	 * 其他客户端把 parameters 写在 paramTypes 之前时, 先缓存参数, 读到参数类型后再解析
+	 */
+	private static class RpcRequestDeserializer extends StdDeserializer<RpcRequest> {
+
+		RpcRequestDeserializer() {
+			super(RpcRequest.class);
+		}
+
+		@Override
+		public RpcRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			RpcRequest rpcRequest = new RpcRequest();
+			TokenBuffer bufferedParameters = null;
+			JsonToken token = p.currentToken() == JsonToken.START_OBJECT ? p.nextToken() : p.currentToken();
+			for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+				String name = p.getCurrentName();
+				p.nextToken();
+				switch (name) {
+					case "requestId":
+						rpcRequest.setRequestId(p.getLongValue());
+						break;
+					case "interfaceName":
+						rpcRequest.setInterfaceName(p.getValueAsString());
+						break;
+					case "methodName":
+						rpcRequest.setMethodName(p.getValueAsString());
+						break;
+					case "methodId":
+						rpcRequest.setMethodId(p.getIntValue());
+						break;
+					case "paramTypes":
+						rpcRequest.setParamTypes(readParamTypes(p, ctxt));
+						break;
+					case "parameters":
+						if (rpcRequest.getParamTypes() != null) {
+							rpcRequest.setParameters(readParameters(p, ctxt, rpcRequest.getParamTypes()));
+						} else {
+							bufferedParameters = new TokenBuffer(p, ctxt);
+							bufferedParameters.copyCurrentStructure(p);
+						}
+						break;
+					default:
+						p.skipChildren();
+				}
+			}
+			if (bufferedParameters != null) {
+				try (JsonParser parser = bufferedParameters.asParser(p.getCodec())) {
+					parser.nextToken();
+					rpcRequest.setParameters(readParameters(parser, ctxt, rpcRequest.getParamTypes()));
+				}
+			}
+			return rpcRequest;
+		}
+
+		private Class<?>[] readParamTypes(JsonParser p, DeserializationContext ctxt) throws IOException {
+			if (p.currentToken() == JsonToken.VALUE_NULL) {
+				return null;
+			}
+			List<Class<?>> paramTypes = new ArrayList<>();
+			while (p.nextToken() != JsonToken.END_ARRAY) {
+				String className = p.getValueAsString();
+				try {
+					paramTypes.add(ctxt.findClass(className));
+				} catch (ClassNotFoundException e) {
+					return ctxt.reportInputMismatch(RpcRequest.class, "找不到参数类型: %s", className);
+				}
+			}
+			return paramTypes.toArray(new Class<?>[0]);
+		}
+
+		/**
+		 * @param paramTypes 参数类型, 为 null 时按 JSON 自身的结构解析
+		 */
+		private Object[] readParameters(JsonParser p, DeserializationContext ctxt, Class<?>[] paramTypes) throws IOException {
+			if (p.currentToken() == JsonToken.VALUE_NULL) {
+				return null;
+			}
+			List<Object> parameters = new ArrayList<>();
+			while (p.nextToken() != JsonToken.END_ARRAY) {
+				int index = parameters.size();
+				Class<?> paramType = paramTypes != null && index < paramTypes.length ? paramTypes[index] : Object.class;
+				parameters.add(p.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, paramType));
+			}
+			return parameters.toArray();
+		}
+	}
+
+	/**
+	 * 响应数据的类型只有调用方知道, 先原样保存为 TokenBuffer, 由 bindResult 按返回值类型绑定
+	 */
+	@SuppressWarnings("rawtypes")
+	private static class RpcResponseDeserializer extends StdDeserializer<RpcResponse> {
+
+		RpcResponseDeserializer() {
+			super(RpcResponse.class);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public RpcResponse deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			RpcResponse rpcResponse = new RpcResponse();
+			JsonToken token = p.currentToken() == JsonToken.START_OBJECT ? p.nextToken() : p.currentToken();
+			for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+				String name = p.getCurrentName();
+				p.nextToken();
+				switch (name) {
+					case "requestId":
+						rpcResponse.setRequestId(p.getLongValue());
+						break;
+					case "statusCode":
+						rpcResponse.setStatusCode(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getIntValue());
+						break;
+					case "message":
+						rpcResponse.setMessage(p.getValueAsString());
+						break;
+					case "data":
+						if (p.currentToken() != JsonToken.VALUE_NULL) {
+							TokenBuffer data = new TokenBuffer(p, ctxt);
+							data.copyCurrentStructure(p);
+							rpcResponse.setData(data);
+						}
+						break;
+					default:
+						p.skipChildren();
+				}
+			}
+			return rpcResponse;
+		}
+	}
 }
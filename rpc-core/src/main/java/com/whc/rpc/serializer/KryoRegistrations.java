@@ -0,0 +1,97 @@
+package com.whc.rpc.serializer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Kryo 业务类型的注册编号表
+ * 从 classpath 上所有的 META-INF/rpc/kryo-registrations 文件读取, 每行为 编号=类名, 编号由文件显式给出,
+ * 客户端和服务端使用同一份编号表(随 API 模块发布), 不依赖各自进程收集到的类型和收集顺序
+ * 编号冲突、同一类型有多个编号、类型不存在时直接抛出异常, 不带着不一致的编号表启动
+ * @ClassName: KryoRegistrations
+ * @Author: whc
+ * @Date: 2021/06/27/15:30
+ */
+final class KryoRegistrations {
+
+	static final String RESOURCE = "META-INF/rpc/kryo-registrations";
+
+	// 小于该值的编号留给 Kryo 内置类型和 RpcRequest、RpcResponse
+	static final int ID_BASE = 100;
+
+	private KryoRegistrations() {
+	}
+
+	/**
+	 * @return 编号 -> 类型, 按编号排序
+	 * @throws IllegalStateException 编号表不合法
+	 */
+	static Map<Integer, Class<?>> load(ClassLoader classLoader, String resource) {
+		Map<Integer, Class<?>> registrations = new TreeMap<>();
+		Map<Class<?>, Integer> ids = new HashMap<>();
+		try {
+			Enumeration<URL> urls = classLoader.getResources(resource);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						parseLine(classLoader, url, line, registrations, ids);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("读取 Kryo 注册编号表失败: " + resource, e);
+		}
+		return Collections.unmodifiableMap(registrations);
+	}
+
+	private static void parseLine(ClassLoader classLoader, URL url, String line, Map<Integer, Class<?>> registrations, Map<Class<?>, Integer> ids) {
+		int commentIndex = line.indexOf('#');
+		if (commentIndex >= 0) {
+			line = line.substring(0, commentIndex);
+		}
+		line = line.trim();
+		if (line.isEmpty()) {
+			return;
+		}
+		int equalsIndex = line.indexOf('=');
+		if (equalsIndex <= 0) {
+			throw new IllegalStateException("Kryo 注册编号表格式错误 [" + url + "]: " + line);
+		}
+		int id;
+		try {
+			id = Integer.parseInt(line.substring(0, equalsIndex).trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalStateException("Kryo 注册编号表格式错误 [" + url + "]: " + line);
+		}
+		if (id < ID_BASE) {
+			throw new IllegalStateException("Kryo 注册编号必须不小于 " + ID_BASE + " [" + url + "]: " + line);
+		}
+		String className = line.substring(equalsIndex + 1).trim();
+		Class<?> clazz;
+		try {
+			clazz = Class.forName(className, false, classLoader);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Kryo 注册编号表中的类型不存在 [" + url + "]: " + className);
+		}
+		Class<?> previous = registrations.get(id);
+		if (previous != null && previous != clazz) {
+			throw new IllegalStateException("Kryo 注册编号冲突: " + id + " 同时对应 " + previous.getName() + " 和 " + className);
+		}
+		Integer previousId = ids.get(clazz);
+		if (previousId != null && previousId != id) {
+			throw new IllegalStateException("Kryo 类型 " + className + " 有多个注册编号: " + previousId + ", " + id);
+		}
+		registrations.put(id, clazz);
+		ids.put(clazz, id);
+	}
+}
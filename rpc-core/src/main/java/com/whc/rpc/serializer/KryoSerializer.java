@@ -1,62 +1,112 @@
 package com.whc.rpc.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
 import com.whc.rpc.enumeration.SerializerCode;
 import com.whc.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * 使用Kryo的序列化器
+ * Kryo 不是线程安全的, 使用有界对象池复用 Kryo 实例及其输入输出缓冲区, 池空时临时创建, 池满时丢弃
+ * 业务类型按 API 模块中的注册编号表(见 KryoRegistrations)注册, 客户端和服务端的编号一致,
+ * 已注册的类型只写入编号, 不再写入完整类名; 未登记的类型仍按类名序列化
  * @ClassName: KryoSerializer
  * @Author: whc
  * @Date: 2021/05/29/20:51
  */
-public class KryoSerializer implements CommonSerializer {
+public class KryoSerializer implements ByteBufSerializer {
 
 	private static final Logger logger = LoggerFactory.getLogger(KryoSerializer.class);
 
-	private static final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-		Kryo kryo = new Kryo();
-		kryo.register(RpcResponse.class);
-		kryo.register(RpcRequest.class);
-		kryo.setReferences(true);
-		kryo.setRegistrationRequired(false);
-		return kryo;
-	});
+	private static final int POOL_SIZE = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+	private static final int BUFFER_SIZE = 4096;
+	// 超过该大小的输出缓冲区用完后不再保留, 避免偶尔的大消息长期占用内存
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	// 业务类型的注册编号表, 类加载时读取, 编号表不合法时序列化器加载失败
+	private static final Map<Integer, Class<?>> REGISTRATIONS =
+			KryoRegistrations.load(KryoSerializer.class.getClassLoader(), KryoRegistrations.RESOURCE);
+
+	private static final byte[] EMPTY_BYTES = new byte[0];
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+	private static final BlockingQueue<KryoHolder> pool = new ArrayBlockingQueue<>(POOL_SIZE);
 
 	@Override
 	public byte[] serialize(Object obj) {
-		try(ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-			Output output = new Output(byteArrayOutputStream);
-			Kryo kryo = kryoThreadLocal.get();
-			kryo.writeObject(output, obj);
-			kryoThreadLocal.remove();
-			return output.toBytes();
+		KryoHolder holder = borrow();
+		try {
+			holder.kryo.writeObject(holder.output, obj);
+			return holder.output.toBytes();
+		} catch (Exception e) {
+			logger.error("序列化时有错误发生:", e);
+			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			release(holder);
+		}
+	}
+
+	@Override
+	public void serialize(Object obj, ByteBuf out) {
+		KryoHolder holder = borrow();
+		try {
+			holder.kryo.writeObject(holder.output, obj);
+			out.writeBytes(holder.output.getBuffer(), 0, holder.output.position());
 		} catch (Exception e) {
 			logger.error("序列化时有错误发生:", e);
 			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			release(holder);
 		}
 	}
 
 	@Override
 	public Object deserialize(byte[] bytes, Class<?> clazz) {
-		try(ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes)) {
-			Input input = new Input(byteArrayInputStream);
-			Kryo kryo = kryoThreadLocal.get();
-			Object o = kryo.readObject(input, clazz);
-			kryoThreadLocal.remove();
+		KryoHolder holder = borrow();
+		try {
+			holder.input.setBuffer(bytes);
+			return holder.kryo.readObject(holder.input, clazz);
+		} catch (Exception e) {
+			logger.error("序列化时有错误发生:", e);
+			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			release(holder);
+		}
+	}
+
+	@Override
+	public Object deserialize(ByteBuf in, Class<?> clazz) {
+		KryoHolder holder = borrow();
+		try {
+			// 堆内存直接包装底层数组, 直接内存则通过 nioBuffer 视图读取, 都不产生拷贝
+			Input input;
+			if (in.hasArray()) {
+				input = holder.input;
+				input.setBuffer(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+			} else {
+				input = holder.byteBufferInput;
+				holder.byteBufferInput.setBuffer(in.nioBuffer());
+			}
+			Object o = holder.kryo.readObject(input, clazz);
+			in.skipBytes(in.readableBytes());
 			return o;
 		} catch (Exception e) {
 			logger.error("序列化时有错误发生:", e);
 			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			release(holder);
 		}
 	}
 
@@ -64,4 +114,45 @@ public class KryoSerializer implements CommonSerializer {
 	public int getCode() {
 		return SerializerCode.valueOf("KRYO").getCode();
 	}
+
+	private static KryoHolder borrow() {
+		KryoHolder holder = pool.poll();
+		if (holder == null) {
+			holder = new KryoHolder();
+		}
+		return holder;
+	}
+
+	private static void release(KryoHolder holder) {
+		holder.input.setBuffer(EMPTY_BYTES);
+		holder.byteBufferInput.setBuffer(EMPTY_BUFFER);
+		if (holder.output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+			holder.output = new Output(BUFFER_SIZE, -1);
+		} else {
+			holder.output.clear();
+		}
+		pool.offer(holder);
+	}
+
+	/**
+	 * 池中的对象: Kryo 实例和它使用的输入输出缓冲区
+	 */
+	private static class KryoHolder {
+
+		private final Kryo kryo;
+		private final Input input = new Input();
+		private final ByteBufferInput byteBufferInput = new ByteBufferInput();
+		private Output output = new Output(BUFFER_SIZE, -1);
+
+		KryoHolder() {
+			kryo = new Kryo();
+			kryo.register(RpcResponse.class);
+			kryo.register(RpcRequest.class);
+			kryo.setReferences(true);
+			kryo.setRegistrationRequired(false);
+			for (Map.Entry<Integer, Class<?>> entry : REGISTRATIONS.entrySet()) {
+				kryo.register(entry.getValue(), entry.getKey());
+			}
+		}
+	}
 }
@@ -1,31 +1,47 @@
 package com.whc.rpc.serializer;
 
+import com.whc.rpc.entity.RpcRequest;
+import com.whc.rpc.entity.RpcResponse;
 import com.whc.rpc.enumeration.SerializerCode;
+import com.whc.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.protostuff.ByteBufferInput;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 使用ProtoBuf的序列化器
+ * LinkedBuffer 不是线程安全的, 每个线程使用自己的缓冲区; 编码时直接写入出站的 ByteBuf
+ * schema 全局缓存, 并按 ServiceTypeRegistry 收集到的服务数据类型提前生成, 避免首次调用时再生成
  * @ClassName: ProtobufSerializer
  * @Author: whc
  * @Date: 2021/06/09/23:44
  */
-public class ProtobufSerializer implements CommonSerializer {
+public class ProtobufSerializer implements ByteBufSerializer {
 
-	private LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
-	private Map<Class<?>, Schema<?>> schemaCache = new ConcurrentHashMap<>();
+	private static final ThreadLocal<LinkedBuffer> bufferThreadLocal = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+	private static final Map<Class<?>, Schema<?>> schemaCache = new ConcurrentHashMap<>();
+	// 已预热到的 ServiceTypeRegistry 版本
+	private static volatile int warmedGeneration = -1;
+
+	public ProtobufSerializer() {
+		warmUp();
+	}
 
 	@Override
 	@SuppressWarnings("unchecked")
 	public byte[] serialize(Object obj) {
 		Class clazz = obj.getClass();
 		Schema schema = getSchema(clazz);
+		LinkedBuffer buffer = bufferThreadLocal.get();
 		byte[] data;
 		try {
 			data = ProtostuffIOUtil.toByteArray(obj, schema, buffer);
@@ -35,6 +51,20 @@ public class ProtobufSerializer implements CommonSerializer {
 		return data;
 	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	public void serialize(Object obj, ByteBuf out) {
+		Schema schema = getSchema(obj.getClass());
+		LinkedBuffer buffer = bufferThreadLocal.get();
+		try {
+			ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+		} catch (IOException e) {
+			throw new SerializeException("序列化时有错误发生");
+		} finally {
+			buffer.clear();
+		}
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public Object deserialize(byte[] bytes, Class<?> clazz) {
@@ -44,13 +74,52 @@ public class ProtobufSerializer implements CommonSerializer {
 		return obj;
 	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object deserialize(ByteBuf in, Class<?> clazz) {
+		Schema schema = getSchema(clazz);
+		Object obj = schema.newMessage();
+		try {
+			if (in.hasArray()) {
+				ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), obj, schema);
+			} else {
+				// 直接内存通过 nioBuffer 视图读取, 与 ProtostuffIOUtil 一样按 group 方式解码嵌套消息
+				ByteBufferInput input = new ByteBufferInput(in.nioBuffer(), true);
+				schema.mergeFrom(input, obj);
+				input.checkLastTagWas(0);
+			}
+		} catch (IOException e) {
+			throw new SerializeException("反序列化时有错误发生");
+		}
+		in.skipBytes(in.readableBytes());
+		return obj;
+	}
+
 	@Override
 	public int getCode() {
 		return SerializerCode.valueOf("PROTOBUF").getCode();
 	}
 
+	/**
+	 * 为 RpcRequest、RpcResponse 和服务接口中的数据类型提前生成 schema
+	 */
+	private static void warmUp() {
+		int generation = ServiceTypeRegistry.generation();
+		if (warmedGeneration == generation) {
+			return;
+		}
+		// 先记录版本, 下面生成 schema 时不会再次进入预热
+		warmedGeneration = generation;
+		getSchema(RpcRequest.class);
+		getSchema(RpcResponse.class);
+		for (Class<?> clazz : ServiceTypeRegistry.getTypes()) {
+			getSchema(clazz);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
-	private Schema getSchema(Class clazz) {
+	private static Schema getSchema(Class clazz) {
+		warmUp();
 		Schema schema = schemaCache.get(clazz);
 		if (Objects.isNull(schema)) {
 			// 这个schema通过RuntimeSchema进行懒创建并缓存
@@ -0,0 +1,40 @@
+package com.whc.rpc.serializer;
+
+import com.whc.rpc.extension.ExtensionLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 序列化器编号 -> 序列化器实例
+ * 序列化器通过 ExtensionLoader 加载, 每种序列化器只有一个实例, 解码每个数据帧时直接查表
+ * @ClassName: SerializerRegistry
+ * @Author: whc
+ * @Date: 2021/06/26/16:05
+ */
+final class SerializerRegistry {
+
+	private static final Logger logger = LoggerFactory.getLogger(SerializerRegistry.class);
+
+	private static final Map<Integer, CommonSerializer> serializers = loadSerializers();
+
+	private SerializerRegistry() {
+	}
+
+	static CommonSerializer get(int code) {
+		return serializers.get(code);
+	}
+
+	private static Map<Integer, CommonSerializer> loadSerializers() {
+		Map<Integer, CommonSerializer> map = new HashMap<>();
+		for (CommonSerializer serializer : ExtensionLoader.getExtensionLoader(CommonSerializer.class).getExtensions()) {
+			CommonSerializer previous = map.putIfAbsent(serializer.getCode(), serializer);
+			if (previous != null) {
+				logger.error("序列化器编号冲突: {} 与 {}", previous.getClass().getName(), serializer.getClass().getName());
+			}
+		}
+		return map;
+	}
+}
@@ -0,0 +1,92 @@
+package com.whc.rpc.serializer;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务接口中用到的数据类型
+ * 服务端发布服务、客户端创建代理时收集接口方法的参数和返回值类型(eg: User、Blog), 序列化器据此预先注册类型、生成 schema
+ * 每收集到新的类型, 版本号加一, 序列化器按版本号判断是否需要补充注册
+ * @ClassName: ServiceTypeRegistry
+ * @Author: whc
+ * @Date: 2021/06/27/14:10
+ */
+public final class ServiceTypeRegistry {
+
+	private static final Set<Class<?>> types = ConcurrentHashMap.newKeySet();
+	private static final Set<Class<?>> services = ConcurrentHashMap.newKeySet();
+	private static final AtomicInteger generation = new AtomicInteger();
+
+	private ServiceTypeRegistry() {
+	}
+
+	/**
+	 * 收集服务接口中方法的参数和返回值类型, 泛型参数(eg: List<User>、CompletableFuture<Blog>)中的类型也会被收集
+	 */
+	public static void registerService(Class<?> serviceClass) {
+		if (!services.add(serviceClass)) {
+			return;
+		}
+		boolean changed = false;
+		for (Method method : serviceClass.getMethods()) {
+			changed |= collect(method.getGenericReturnType());
+			for (Type type : method.getGenericParameterTypes()) {
+				changed |= collect(type);
+			}
+		}
+		if (changed) {
+			generation.incrementAndGet();
+		}
+	}
+
+	public static Set<Class<?>> getTypes() {
+		return Collections.unmodifiableSet(types);
+	}
+
+	public static int generation() {
+		return generation.get();
+	}
+
+	private static boolean collect(Type type) {
+		if (type instanceof Class) {
+			Class<?> clazz = (Class<?>) type;
+			if (clazz.isArray()) {
+				return collect(clazz.getComponentType());
+			}
+			return isDataType(clazz) && types.add(clazz);
+		}
+		boolean changed = false;
+		if (type instanceof ParameterizedType) {
+			changed = collect(((ParameterizedType) type).getRawType());
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				changed |= collect(argument);
+			}
+		} else if (type instanceof GenericArrayType) {
+			changed = collect(((GenericArrayType) type).getGenericComponentType());
+		} else if (type instanceof WildcardType) {
+			for (Type bound : ((WildcardType) type).getUpperBounds()) {
+				changed |= collect(bound);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * 只收集业务数据类型, JDK 类型、基本类型、接口和抽象类不需要注册
+	 */
+	private static boolean isDataType(Class<?> clazz) {
+		return !clazz.isPrimitive()
+				&& !clazz.isInterface()
+				&& !Modifier.isAbstract(clazz.getModifiers())
+				&& !clazz.getName().startsWith("java.")
+				&& !clazz.getName().startsWith("javax.");
+	}
+}
@@ -15,4 +15,6 @@ public interface RpcClient {
 
 	Object sendRequest(RpcRequest rpcRequest);
 
+	CommonSerializer getSerializer();
+
 }
@@ -1,22 +1,37 @@
 package com.whc.rpc.transport;
 
+import com.whc.rpc.annotation.Oneway;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.exception.RpcException;
+import com.whc.rpc.serializer.ServiceTypeRegistry;
 import com.whc.rpc.transport.netty.client.NettyClient;
 import com.whc.rpc.transport.socket.client.SocketClient;
+import com.whc.rpc.util.MethodIdUtil;
+import com.whc.rpc.util.RpcConfig;
+import com.whc.rpc.util.RpcMessageChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.lang.reflect.Type;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * RPC客户端代理类
  * 动态代理封装request对象
+ * 调用超时时间的优先级: 配置文件中的方法级配置 rpc.client.timeout.接口名.方法名 > 构造代理时指定的超时时间 > 配置文件中的 rpc.client.timeout
+ * 返回值类型为 CompletableFuture 的方法是异步方法, 代理直接返回结果的 future, 不阻塞调用线程;
+ * 服务端对应的实现同样返回 CompletableFuture, 结果完成后回写响应
+ * 单向调用(@Oneway 标记, 或开启 rpc.client.oneway.void 后返回 void 的方法)发出后立即返回, 不等待响应
  * @ClassName: RpcClientProxy
  * @Author: whc
  * @Date: 2021/05/24/20:11
@@ -24,37 +39,77 @@ import java.util.concurrent.ExecutionException;
 public class RpcClientProxy implements InvocationHandler {
 
 	private static final Logger logger = LoggerFactory.getLogger(RpcClientProxy.class);
+	// 进程内所有客户端共用一张未完成请求表, 请求号在进程内单调递增即可保证唯一
+	private static final AtomicLong REQUEST_ID_GENERATOR = new AtomicLong();
+	// 所有返回 void 的方法都作为单向调用
+	private static final boolean onewayVoid = RpcConfig.getBoolean(RpcConfigEnum.CLIENT_ONEWAY_VOID, false);
 
 	private final RpcClient client;
+	private final long timeoutMillis;
+	// 代理类 -> (方法 -> 方法编号、超时时间等调用信息)
+	// 父接口的方法被多个服务继承时是同一个 Method 对象, 需要按代理的服务接口区分
+	private final Map<Class<?>, Map<Method, MethodInfo>> methodInfos = new ConcurrentHashMap<>();
 
 	public RpcClientProxy(RpcClient client) {
+		this(client, RpcConfig.getLong(RpcConfigEnum.CLIENT_TIMEOUT, NettyClient.DEFAULT_TIMEOUT_MILLIS));
+	}
+
+	/**
+	 * @param timeoutMillis 通过该代理发起的调用的超时时间, 小于等于0表示不超时
+	 */
+	public RpcClientProxy(RpcClient client, long timeoutMillis) {
 		this.client = client;
+		this.timeoutMillis = timeoutMillis;
 	}
 
 	@SuppressWarnings("unchecked")
 	public <T> T getProxy(Class<T> clazz) {
+		// 收集接口中的数据类型, 供序列化器预先注册
+		ServiceTypeRegistry.registerService(clazz);
 		return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
 	}
 
 	// jdk 动态代理， 每一次代理对象调用方法，会经过此方法增强 (反射获取request对象，socket发送至客户端)
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-		logger.info("调用方法: {}#{}", method.getDeclaringClass().getName(), method.getName());
+		MethodInfo methodInfo = methodInfos.computeIfAbsent(proxy.getClass(), k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(method, m -> createMethodInfo(proxy.getClass().getInterfaces()[0], m));
+		logger.info("调用方法: {}#{}", methodInfo.interfaceName, method.getName());
 		RpcRequest rpcRequest = RpcRequest.builder()
-				.requestId(UUID.randomUUID().toString())
-				.interfaceName(method.getDeclaringClass().getName())
+				.requestId(REQUEST_ID_GENERATOR.incrementAndGet())
+				.interfaceName(methodInfo.interfaceName)
 				.methodName(method.getName())
 				.parameters(args)
 				.paramTypes(method.getParameterTypes())
+				.methodId(methodInfo.methodId)
 				.build();
 
+		if (methodInfo.oneway) {
+			rpcRequest.setOneway(true);
+			invokeOneway(rpcRequest, methodInfo);
+			return null;
+		}
+
+		if (methodInfo.async) {
+			return invokeAsync(rpcRequest, methodInfo);
+		}
+
 		RpcResponse rpcResponse = null;
 		if(client instanceof NettyClient) {
-			CompletableFuture<RpcResponse> completableFuture = (CompletableFuture<RpcResponse>) client.sendRequest(rpcRequest);
+			CompletableFuture<RpcResponse> completableFuture = ((NettyClient) client).sendRequest(rpcRequest, methodInfo.timeoutMillis);
 			try {
+				// 超时或连接关闭时 future 会以异常结束, 不会无限期阻塞
 				rpcResponse = completableFuture.get();
-			} catch (InterruptedException | ExecutionException e) {
+				RpcMessageChecker.check(rpcRequest, rpcResponse);
+			} catch (ExecutionException e) {
+				logger.error("方法调用失败", e.getCause());
+				if (e.getCause() instanceof RpcException) {
+					throw e.getCause();
+				}
+				throw new RpcException("方法调用失败: ", e.getCause());
+			} catch (InterruptedException e) {
 				logger.error("方法调用请求发送失败", e);
+				Thread.currentThread().interrupt();
 				return null;
 			}
 		}
@@ -63,6 +118,96 @@ public class RpcClientProxy implements InvocationHandler {
 			rpcResponse = (RpcResponse)client.sendRequest(rpcRequest);
 		}
 
-		return rpcResponse.getData();
+		return client.getSerializer().bindResult(rpcResponse.getData(), methodInfo.resultType);
+	}
+
+	/**
+	 * 异步调用, 返回的 future 在响应到达后以服务方法的结果完成, 调用失败、超时或连接关闭时以异常结束
+	 */
+	private CompletableFuture<Object> invokeAsync(RpcRequest rpcRequest, MethodInfo methodInfo) {
+		if (client instanceof NettyClient) {
+			return ((NettyClient) client).sendRequest(rpcRequest, methodInfo.timeoutMillis)
+					.thenApply(rpcResponse -> {
+						RpcMessageChecker.check(rpcRequest, rpcResponse);
+						return client.getSerializer().bindResult(rpcResponse.getData(), methodInfo.resultType);
+					});
+		}
+		// BIO 客户端只能同步发送, 返回已完成的 future
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		try {
+			RpcResponse rpcResponse = (RpcResponse) client.sendRequest(rpcRequest);
+			RpcMessageChecker.check(rpcRequest, rpcResponse);
+			future.complete(client.getSerializer().bindResult(rpcResponse.getData(), methodInfo.resultType));
+		} catch (RpcException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 单向调用, 请求写出后即返回; 发送失败只记录日志
+	 */
+	private void invokeOneway(RpcRequest rpcRequest, MethodInfo methodInfo) {
+		try {
+			if (client instanceof NettyClient) {
+				((NettyClient) client).sendRequest(rpcRequest, methodInfo.timeoutMillis).whenComplete((rpcResponse, cause) -> {
+					if (cause != null) {
+						logger.error("单向调用发送失败: {}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), cause);
+					}
+				});
+				return;
+			}
+			// BIO 服务端总会返回响应, 按普通调用发送并忽略结果
+			client.sendRequest(rpcRequest);
+		} catch (RuntimeException e) {
+			// 服务发现失败(找不到服务提供者)等同步抛出的异常与异步的发送失败一样只记录, 单向调用不向调用方抛出
+			logger.error("单向调用发送失败: {}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+		}
+	}
+
+	/**
+	 * @param serviceClass 代理的服务接口, 请求中的接口名和方法编号都以它为准, 而不是方法的声明类
+	 */
+	private MethodInfo createMethodInfo(Class<?> serviceClass, Method method) {
+		String interfaceName = serviceClass.getName();
+		String key = RpcConfigEnum.CLIENT_TIMEOUT.getPropertyValue() + "." + interfaceName + "." + method.getName();
+		boolean async = CompletableFuture.class.isAssignableFrom(method.getReturnType());
+		Type resultType = method.getGenericReturnType();
+		if (async) {
+			// 异步方法的结果类型为 CompletableFuture<T> 中的 T
+			resultType = resultType instanceof ParameterizedType ? ((ParameterizedType) resultType).getActualTypeArguments()[0] : Object.class;
+		}
+		boolean oneway = false;
+		if (method.getReturnType() == void.class) {
+			oneway = onewayVoid || method.isAnnotationPresent(Oneway.class);
+		} else if (method.isAnnotationPresent(Oneway.class)) {
+			logger.warn("@Oneway 只能用于返回 void 的方法, 按普通调用处理: {}#{}", interfaceName, method.getName());
+		}
+		return new MethodInfo(interfaceName, MethodIdUtil.methodId(interfaceName, method), RpcConfig.getLong(key, timeoutMillis), async, oneway, resultType);
+	}
+
+	/**
+	 * 代理方法的调用信息, 每个方法只计算一次
+	 */
+	private static class MethodInfo {
+
+		private final String interfaceName;
+		private final int methodId;
+		private final long timeoutMillis;
+		// 返回值为 CompletableFuture 的异步方法
+		private final boolean async;
+		// 单向调用, 不等待响应
+		private final boolean oneway;
+		// 结果类型, 用于绑定响应数据
+		private final Type resultType;
+
+		MethodInfo(String interfaceName, int methodId, long timeoutMillis, boolean async, boolean oneway, Type resultType) {
+			this.interfaceName = interfaceName;
+			this.methodId = methodId;
+			this.timeoutMillis = timeoutMillis;
+			this.async = async;
+			this.oneway = oneway;
+			this.resultType = resultType;
+		}
 	}
 }
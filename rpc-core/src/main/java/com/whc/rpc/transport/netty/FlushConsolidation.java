@@ -0,0 +1,38 @@
+package com.whc.rpc.transport.netty;
+
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.util.RpcConfig;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+/**
+ * 合并 flush, 客户端和服务端的 pipeline 共用同一份配置
+ * 每次 writeAndFlush 都会触发一次 flush, 也就是一次 write 系统调用, 高 QPS 时系统调用的开销占大头
+ * 使用 netty 的 FlushConsolidationHandler, 放在 pipeline 的最前面(最靠近 head):
+ * 正在读取数据时在 channelReadComplete 时统一 flush, 否则推迟到当前事件循环任务结束, 积累的 flush 次数达到 rpc.flush.max.batch 时立即 flush
+ * @ClassName: FlushConsolidation
+ * @Author: whc
+ * @Date: 2021/07/01/20:30
+ */
+public final class FlushConsolidation {
+
+	private static final int DEFAULT_MAX_BATCH = 64;
+
+	private static final int MAX_BATCH = RpcConfig.getInt(RpcConfigEnum.FLUSH_MAX_BATCH, DEFAULT_MAX_BATCH);
+
+	private FlushConsolidation() {
+	}
+
+	/**
+	 * 配置的合并上限大于1时才需要添加处理器
+	 */
+	public static boolean isEnabled() {
+		return MAX_BATCH > 1;
+	}
+
+	/**
+	 * FlushConsolidationHandler 有状态, 每个连接创建一个
+	 */
+	public static FlushConsolidationHandler newHandler() {
+		return new FlushConsolidationHandler(MAX_BATCH, true);
+	}
+}
@@ -0,0 +1,134 @@
+package com.whc.rpc.transport.netty.client;
+
+import com.whc.rpc.enumeration.RpcError;
+import com.whc.rpc.exception.RpcException;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 同一个服务提供者(地址+序列化器)的连接池
+ * 固定 N 个连接槽位, 每个槽位保存一个连接的 future, 选择未完成请求数最少的活跃连接
+ * 连接异步建立, 槽位为空、连接失败或连接断开时发起新的连接,
+ * 同一个槽位同一时刻只有一个连接在建立, 并发的请求都挂在这个 future 上, 连接建立后再发送
+ * @ClassName: ChannelPool
+ * @Author: whc
+ * @Date: 2021/06/24/22:10
+ */
+class ChannelPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChannelPool.class);
+
+	private final InetSocketAddress address;
+	private final Bootstrap bootstrap;
+	private final AtomicReferenceArray<CompletableFuture<Channel>> slots;
+
+	ChannelPool(InetSocketAddress address, Bootstrap bootstrap, int size) {
+		this.address = address;
+		this.bootstrap = bootstrap;
+		this.slots = new AtomicReferenceArray<>(size);
+	}
+
+	/**
+	 * 获取未完成请求数最少的活跃连接, 不会阻塞调用线程
+	 * 没有活跃连接时返回正在建立的连接, 所有连接都建立失败时 future 以异常结束
+	 */
+	CompletableFuture<Channel> get() {
+		Channel selected = null;
+		int minPending = Integer.MAX_VALUE;
+		CompletableFuture<Channel> connecting = null;
+		for (int i = 0; i < slots.length(); i++) {
+			CompletableFuture<Channel> slot = slots.get(i);
+			if (slot == null || isBroken(slot)) {
+				slot = connect(i, slot);
+			}
+			if (!slot.isDone()) {
+				if (connecting == null) {
+					connecting = slot;
+				}
+				continue;
+			}
+			if (slot.isCompletedExceptionally()) {
+				// 本次获取发起的连接立即失败, 下次获取时重试
+				if (connecting == null) {
+					connecting = slot;
+				}
+				continue;
+			}
+			Channel channel = slot.join();
+			int pending = UnprocessedRequests.pendingCount(channel);
+			if (pending < minPending) {
+				minPending = pending;
+				selected = channel;
+			}
+		}
+		if (selected != null) {
+			return CompletableFuture.completedFuture(selected);
+		}
+		return connecting;
+	}
+
+	InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * 关闭连接池, 连接等待 graceMillis 后关闭, 让已发出的请求有机会收到响应
+	 * 没有未完成请求的连接也不立即关闭, 调用方可能刚从连接池取到连接, 请求还没有写出
+	 */
+	void closeGracefully(long graceMillis) {
+		for (int i = 0; i < slots.length(); i++) {
+			CompletableFuture<Channel> slot = slots.getAndSet(i, null);
+			if (slot != null) {
+				slot.thenAccept(channel -> channel.eventLoop().schedule(() -> channel.close(), graceMillis, TimeUnit.MILLISECONDS));
+			}
+		}
+	}
+
+	void close() {
+		for (int i = 0; i < slots.length(); i++) {
+			CompletableFuture<Channel> slot = slots.getAndSet(i, null);
+			if (slot != null) {
+				slot.thenAccept(Channel::close);
+			}
+		}
+	}
+
+	/**
+	 * 连接失败或已断开的槽位需要重新连接
+	 */
+	private static boolean isBroken(CompletableFuture<Channel> slot) {
+		if (!slot.isDone()) {
+			return false;
+		}
+		return slot.isCompletedExceptionally() || !slot.join().isActive();
+	}
+
+	/**
+	 * 替换槽位上失效的连接, 只有替换成功的线程发起连接, 其余线程使用它发起的连接
+	 */
+	private CompletableFuture<Channel> connect(int index, CompletableFuture<Channel> expected) {
+		CompletableFuture<Channel> future = new CompletableFuture<>();
+		if (!slots.compareAndSet(index, expected, future)) {
+			CompletableFuture<Channel> current = slots.get(index);
+			return current == null ? connect(index, null) : current;
+		}
+		bootstrap.connect(address).addListener((ChannelFutureListener) f -> {
+			if (f.isSuccess()) {
+				logger.info("客户端连接成功! {} 槽位: {}", address, index);
+				future.complete(f.channel());
+			} else {
+				logger.error("连接服务端 {} 时有错误发生", address, f.cause());
+				future.completeExceptionally(new RpcException(RpcError.CLIENT_CONNECT_SERVER_FAILURE, address.toString()));
+			}
+		});
+		return future;
+	}
+}
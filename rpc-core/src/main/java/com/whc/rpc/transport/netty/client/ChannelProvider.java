@@ -2,8 +2,16 @@ package com.whc.rpc.transport.netty.client;
 
 import com.whc.rpc.codec.CommonDecoder;
 import com.whc.rpc.codec.CommonEncoder;
+import com.whc.rpc.codec.RpcProtocol;
 import com.whc.rpc.codec.Spliter;
+import com.whc.rpc.enumeration.ProtocolVersion;
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.registry.ServiceChangeListener;
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.ServiceMetadata;
 import com.whc.rpc.serializer.CommonSerializer;
+import com.whc.rpc.transport.netty.FlushConsolidation;
+import com.whc.rpc.util.RpcConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -13,13 +21,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 
 /**
  * 用于获取 Channel 对象
+ * 每个服务提供者(地址+序列化器+协议版本)维护一个连接池, 连接数由 rpc.client.connections 配置
+ * 协议版本取服务提供者在元数据中声明的版本与 rpc.protocol.version 中较低的一个, 未声明版本的服务提供者只使用 V1
+ * 服务提供者从注册中心下线后关闭对应的连接池(见 SERVICE_CHANGE_LISTENER)
  * @ClassName: ChannelProvider
  * @Author: whc
  * @Date: 2021/06/10/0:55
@@ -27,62 +42,127 @@ import java.util.concurrent.ExecutionException;
 public class ChannelProvider {
 
 	private static final Logger logger = LoggerFactory.getLogger(ChannelProvider.class);
+	private static final int DEFAULT_CONNECTIONS = 2;
+
+	// 客户端最高使用的协议版本, 服务端按收到的协议版本回写响应
+	private static final ProtocolVersion maxProtocolVersion = loadProtocolVersion();
+	// 每个服务提供者的连接数
+	private static final int connections = loadConnections();
+
 	private static EventLoopGroup eventLoopGroup;
 	private static Bootstrap bootstrap = initializeBootstrap();
 
-	private static Map<String, Channel> channels = new ConcurrentHashMap<>();
+	private static Map<String, ChannelPool> pools = new ConcurrentHashMap<>();
+
+	// 服务名 -> 该服务当前的服务提供者地址, 同一地址可能同时提供多个服务
+	private static final Map<String, Set<InetSocketAddress>> serviceAddresses = new HashMap<>();
+
+	/**
+	 * 服务提供者下线时关闭到它的连接, 连接上已发出的请求最多再等待一个默认超时时间
+	 * 只有地址不再提供任何已监听的服务时才关闭, 某个服务下线不影响同一地址上的其他服务
+	 */
+	public static final ServiceChangeListener SERVICE_CHANGE_LISTENER = ChannelProvider::onServiceChange;
+
+	/**
+	 * 异步获取连接, 连接建立完成后 future 结束, 不会阻塞调用线程
+	 */
+	public static CompletableFuture<Channel> get(ServiceEndpoint endpoint, CommonSerializer serializer) {
+		InetSocketAddress inetSocketAddress = endpoint.getSocketAddress();
+		ProtocolVersion protocolVersion = negotiate(endpoint.getMetadata());
+		String key = inetSocketAddress.toString() + serializer.getCode() + "v" + protocolVersion.getCode();
+		// 每个连接池使用自己的 Bootstrap 副本, 不再在共享的 Bootstrap 上修改 handler
+		ChannelPool pool = pools.computeIfAbsent(key, k -> new ChannelPool(inetSocketAddress,
+				bootstrap.clone().handler(new ClientChannelInitializer(serializer, protocolVersion)), connections));
+		return pool.get();
+	}
+
+	/**
+	 * 服务提供者在元数据中声明支持的最高协议版本, 没有声明的(旧版本或 SocketServer)只能使用 V1
+	 */
+	static ProtocolVersion negotiate(ServiceMetadata metadata) {
+		int code = Math.min(maxProtocolVersion.getCode(), metadata.getProtocolVersion());
+		ProtocolVersion version = ProtocolVersion.getByCode(code);
+		return version == null ? ProtocolVersion.V1 : version;
+	}
+
+	private static synchronized void onServiceChange(String serviceName, List<ServiceEndpoint> endpoints, List<ServiceEndpoint> added, List<ServiceEndpoint> removed) {
+		Set<InetSocketAddress> addresses = new HashSet<>();
+		for (ServiceEndpoint endpoint : endpoints) {
+			addresses.add(endpoint.getSocketAddress());
+		}
+		serviceAddresses.put(serviceName, addresses);
+		for (ServiceEndpoint endpoint : removed) {
+			InetSocketAddress address = endpoint.getSocketAddress();
+			if (!isInUse(address)) {
+				close(address);
+			}
+		}
+	}
 
-	public static Channel get(InetSocketAddress inetSocketAddress, CommonSerializer serializer) throws InterruptedException {
-		String key = inetSocketAddress.toString() + serializer.getCode();
-		if (channels.containsKey(key)) {
-			Channel channel = channels.get(key);
-			if(channels != null && channel.isActive()) {
-				return channel;
-			} else {
-				channels.remove(key);
+	static synchronized boolean isInUse(InetSocketAddress address) {
+		for (Set<InetSocketAddress> addresses : serviceAddresses.values()) {
+			if (addresses.contains(address)) {
+				return true;
 			}
 		}
+		return false;
+	}
 
-		bootstrap.handler(new ChannelInitializer<SocketChannel>() {
-			@Override
-			protected void initChannel(SocketChannel ch) throws Exception {
-				ChannelPipeline pipeline = ch.pipeline();
-				// 执行链: head -> CommonEncoder(out) -> Spliter -> CommonDecoder -> NettyClientHandler -> tail
-				// out出栈主要是对写回结果进行加工
-				// in入栈主要是用来读取服务端数据,写回结果
-				// 发送RpcRequest请求对象,经过CommonEncoder编码按照自定义协议编码成ByteBuf对象
-				pipeline.addLast(new CommonEncoder(serializer))
-						// 接收服务端响应回来的RpcResponse对象,经过Spliter,对网络数据包按照基于固定长度域的拆包器进行拆包
-						.addLast(new Spliter())
-						// 对数据包按照自定义协议进行解码成POJO对象
-						.addLast(new CommonDecoder())
-						// 客户端对解码出来的POJO对象进行调用处理
-						.addLast(new NettyClientHandler());
+	private static void close(InetSocketAddress address) {
+		Iterator<ChannelPool> iterator = pools.values().iterator();
+		while (iterator.hasNext()) {
+			ChannelPool pool = iterator.next();
+			if (pool.getAddress().equals(address)) {
+				iterator.remove();
+				pool.closeGracefully(NettyClient.DEFAULT_TIMEOUT_MILLIS);
+				logger.info("服务提供者 {} 已下线, 关闭连接池", address);
 			}
-		});
-
-		Channel channel = null;
-		try {
-			channel = connect(bootstrap, inetSocketAddress);
-		} catch (ExecutionException e) {
-			logger.error("连接客户端时有错误发生", e);
-			return null;
 		}
-		channels.put(key, channel);
-		return channel;
 	}
 
-	private static Channel connect(Bootstrap bootstrap, InetSocketAddress inetSocketAddress) throws ExecutionException, InterruptedException {
-		CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
-		bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
-			if (future.isSuccess()) {
-				logger.info("客户端连接成功!");
-				completableFuture.complete(future.channel());
-			} else {
-				throw new IllegalStateException();
+	private static class ClientChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+		private final CommonSerializer serializer;
+		private final ProtocolVersion protocolVersion;
+
+		ClientChannelInitializer(CommonSerializer serializer, ProtocolVersion protocolVersion) {
+			this.serializer = serializer;
+			this.protocolVersion = protocolVersion;
+		}
+
+		@Override
+		protected void initChannel(SocketChannel ch) throws Exception {
+			ch.attr(RpcProtocol.PROTOCOL_VERSION).set(protocolVersion);
+			ChannelPipeline pipeline = ch.pipeline();
+			// 执行链: head -> [FlushConsolidationHandler] -> CommonEncoder(out) -> Spliter -> CommonDecoder -> NettyClientHandler -> tail
+			// 多个调用线程的请求合并 flush, 减少系统调用
+			if (FlushConsolidation.isEnabled()) {
+				pipeline.addLast(FlushConsolidation.newHandler());
 			}
-		});
-		return completableFuture.get();
+			// out出栈主要是对写回结果进行加工
+			// in入栈主要是用来读取服务端数据,写回结果
+			// 发送RpcRequest请求对象,经过CommonEncoder编码按照自定义协议编码成ByteBuf对象
+			pipeline.addLast(new CommonEncoder(serializer, protocolVersion))
+					// 接收服务端响应回来的RpcResponse对象,经过Spliter,对网络数据包按照基于固定长度域的拆包器进行拆包
+					.addLast(new Spliter())
+					// 对数据包按照自定义协议进行解码成POJO对象
+					.addLast(new CommonDecoder())
+					// 客户端对解码出来的POJO对象进行调用处理
+					.addLast(new NettyClientHandler());
+		}
+	}
+
+	private static ProtocolVersion loadProtocolVersion() {
+		String value = RpcConfig.getProperty(RpcConfigEnum.PROTOCOL_VERSION);
+		if (value == null) {
+			return ProtocolVersion.V2;
+		}
+		ProtocolVersion version = ProtocolVersion.getByCode(Integer.parseInt(value));
+		return version == null ? ProtocolVersion.V2 : version;
+	}
+
+	private static int loadConnections() {
+		return Math.max(1, RpcConfig.getInt(RpcConfigEnum.CLIENT_CONNECTIONS, DEFAULT_CONNECTIONS));
 	}
 
 	private static Bootstrap initializeBootstrap() {
@@ -1,25 +1,29 @@
 package com.whc.rpc.transport.netty.client;
 
+import com.whc.rpc.codec.RpcProtocol;
+import com.whc.rpc.enumeration.ProtocolVersion;
 import com.whc.rpc.loadbalance.LoadBalancer;
-import com.whc.rpc.loadbalance.loadbalancer.RandomLoadBalance;
 import com.whc.rpc.registry.ServiceDiscovery;
+import com.whc.rpc.registry.ServiceEndpoint;
 import com.whc.rpc.registry.zk.ZKServiceDiscoveryImpl;
 import com.whc.rpc.transport.RpcClient;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.enumeration.ResponseCode;
 import com.whc.rpc.enumeration.RpcError;
 import com.whc.rpc.exception.RpcException;
 import com.whc.rpc.factory.SingletonFactory;
 import com.whc.rpc.serializer.CommonSerializer;
-import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetSocketAddress;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * NIO方式消费者客户端类
@@ -30,24 +34,20 @@ import java.util.concurrent.CompletableFuture;
 public class NettyClient implements RpcClient {
 
 	private static final Logger logger = LoggerFactory.getLogger(NettyClient.class);
-	private static final EventLoopGroup group;
-	private static final Bootstrap bootstrap;
-
-	static {
-		group = new NioEventLoopGroup();
-		bootstrap = new Bootstrap();
-		// 1. 指定线程模型
-		bootstrap.group(group)
-				// 2. 指定IO类型为NIO
-				.channel(NioSocketChannel.class);
-	}
+	// 连接上服务端已确认的方法编号, 这些方法之后只发送精简请求
+	private static final AttributeKey<Set<Integer>> KNOWN_METHOD_IDS = AttributeKey.valueOf("knownMethodIds");
 
 	private final ServiceDiscovery serviceDiscovery;
 	private final CommonSerializer serializer;
 	private final UnprocessedRequests unprocessedRequests;
 
+	/**
+	 * 默认的调用超时时间(毫秒)
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
 	public NettyClient() {
-		this(DEFAULT_SERIALIZER, new RandomLoadBalance());
+		this(DEFAULT_SERIALIZER, LoadBalancer.getDefault());
 	}
 
 	public NettyClient(LoadBalancer loadBalancer) {
@@ -55,19 +55,33 @@ public class NettyClient implements RpcClient {
 	}
 
 	public NettyClient(Integer serializer) {
-		this(serializer, new RandomLoadBalance());
+		this(serializer, LoadBalancer.getDefault());
 	}
 
 	public NettyClient(Integer serializer, LoadBalancer loadBalancer) {
 		// 初始化注册中心，建立连接
-		// 默认负载均衡为随机负载均衡
+		// 默认负载均衡由配置文件指定, 未配置时为随机负载均衡
 		this.serviceDiscovery = new ZKServiceDiscoveryImpl(loadBalancer);
+		// 服务提供者下线后关闭到它的连接
+		this.serviceDiscovery.addListener(ChannelProvider.SERVICE_CHANGE_LISTENER);
 		this.serializer = CommonSerializer.getByCode(serializer);
 		this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
 	}
 
+	@Override
+	public CommonSerializer getSerializer() {
+		return serializer;
+	}
+
 	@Override
 	public CompletableFuture<RpcResponse> sendRequest(RpcRequest rpcRequest) {
+		return sendRequest(rpcRequest, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param timeoutMillis 超时时间, 超时后返回的 future 以异常结束, 小于等于0表示不超时
+	 */
+	public CompletableFuture<RpcResponse> sendRequest(RpcRequest rpcRequest, long timeoutMillis) {
 		if(serializer == null) {
 			logger.error("未设置序列化器");
 			throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
@@ -75,37 +89,81 @@ public class NettyClient implements RpcClient {
 
 		CompletableFuture<RpcResponse> resultFuture = new CompletableFuture<>();
 
-		try {
-			// 根据负载均衡策略获取服务地址
-			InetSocketAddress inetSocketAddress = serviceDiscovery.serviceDiscovery(rpcRequest.getInterfaceName());
-
-			// 获取通道对象
-			Channel channel = ChannelProvider.get(inetSocketAddress, serializer);
+		// 根据负载均衡策略获取服务地址
+		ServiceEndpoint endpoint = serviceDiscovery.serviceDiscovery(rpcRequest.getInterfaceName(), serializer.getCode());
 
-			if (!channel.isActive()) {
-				group.shutdownGracefully();
-				return null;
+		// 异步获取通道对象, 连接建立完成后再发送请求
+		ChannelProvider.get(endpoint, serializer).whenComplete((channel, cause) -> {
+			if (cause != null) {
+				resultFuture.completeExceptionally(cause);
+				return;
 			}
+			write(channel, rpcRequest, resultFuture, timeoutMillis);
+		});
 
-			unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
+		return resultFuture;
+	}
 
-			channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) future1 -> {
-				if (future1.isSuccess()) {
-					logger.info(String.format("客户端发送消息: %s", rpcRequest.toString()));
-				} else {
-					// 为了让netty不会关闭
-					future1.channel().close();
+	/**
+	 * 单向调用不登记到未完成请求表, 请求写出后 future 以 null 完成
+	 * V1 数据帧没有标志位, 单向调用退化为普通调用: 服务端照常返回响应, future 在响应到达后完成
+	 */
+	private void write(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse> resultFuture, long timeoutMillis) {
+		boolean oneway = rpcRequest.isOneway() && channel.attr(RpcProtocol.PROTOCOL_VERSION).get() == ProtocolVersion.V2;
+		if (!oneway) {
+			unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture, channel, timeoutMillis);
+		}
+
+		channel.writeAndFlush(toWireRequest(channel, rpcRequest, resultFuture)).addListener((ChannelFutureListener) future1 -> {
+			if (future1.isSuccess()) {
+				logger.info(String.format("客户端发送消息: %s", rpcRequest.toString()));
+				if (oneway) {
+					resultFuture.complete(null);
+				}
+			} else {
+				// 为了让netty不会关闭
+				future1.channel().close();
+				if (oneway) {
 					resultFuture.completeExceptionally(future1.cause());
-					logger.error("发送消息时有错误发生: ", future1.cause());
+				} else {
+					unprocessedRequests.fail(rpcRequest.getRequestId(), future1.cause());
 				}
-			});
-		} catch (InterruptedException e) {
-			unprocessedRequests.remove(rpcRequest.getRequestId());
-			logger.error(e.getMessage(), e);
-			Thread.currentThread().interrupt();
-		}
+				logger.error("发送消息时有错误发生: ", future1.cause());
+			}
+		});
+	}
 
-		return resultFuture;
+	/**
+	 * 连接上已约定过方法编号时, 只发送请求号、方法编号和参数; 否则发送完整请求, 调用成功后记录该方法编号
+	 * 服务端发布时会拒绝编号冲突的方法, 完整请求调用成功即说明该编号在服务端只对应这一个方法
+	 * JSON 序列化需要按参数类型还原参数, 且主要用于调试和跨语言调用, 始终发送完整请求
+	 */
+	private RpcRequest toWireRequest(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse> resultFuture) {
+		if (serializer.getCode() == CommonSerializer.JSON_SERIALIZER) {
+			return rpcRequest;
+		}
+		Attribute<Set<Integer>> attribute = channel.attr(KNOWN_METHOD_IDS);
+		Set<Integer> knownMethodIds = attribute.get();
+		if (knownMethodIds == null) {
+			attribute.setIfAbsent(ConcurrentHashMap.newKeySet());
+			knownMethodIds = attribute.get();
+		}
+		int methodId = rpcRequest.getMethodId();
+		if (knownMethodIds.contains(methodId)) {
+			return RpcRequest.builder()
+					.requestId(rpcRequest.getRequestId())
+					.methodId(methodId)
+					.parameters(rpcRequest.getParameters())
+					.oneway(rpcRequest.isOneway())
+					.build();
+		}
+		Set<Integer> methodIds = knownMethodIds;
+		resultFuture.thenAccept(rpcResponse -> {
+			if (rpcResponse != null && Integer.valueOf(ResponseCode.SUCCESS.getCode()).equals(rpcResponse.getStatusCode())) {
+				methodIds.add(methodId);
+			}
+		});
+		return rpcRequest;
 	}
 
 }
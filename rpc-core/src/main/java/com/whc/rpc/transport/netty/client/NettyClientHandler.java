@@ -34,6 +34,13 @@ public class NettyClientHandler extends SimpleChannelInboundHandler<RpcResponse>
 		}
 	}
 
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		// 连接关闭, 该连接上未完成的请求立即失败
+		unprocessedRequests.failChannel(ctx.channel());
+		super.channelInactive(ctx);
+	}
+
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
 		logger.error("过程调用时有错误发生:");
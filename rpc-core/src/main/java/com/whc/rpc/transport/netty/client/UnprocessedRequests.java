@@ -1,33 +1,180 @@
 package com.whc.rpc.transport.netty.client;
 
 import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.enumeration.RpcError;
+import com.whc.rpc.exception.RpcException;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.collection.LongObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * 未完成的请求表: 请求号 -> 等待响应的 future
+ * 按请求号分段, 每段是以 long 为键的开放寻址表, 放入和查找都不需要装箱或计算字符串哈希
+ * 请求号单调递增, 相邻的请求会均匀落在不同的分段上
+ *
+ * 每个请求在时间轮上挂一个超时任务, 超时后从表中移除并以异常结束 future;
+ * 连接关闭时, 该连接上所有未完成的请求立即失败, 保证表的大小和调用方的等待时间都是有界的
+ * 同时维护每个连接上未完成的请求数, 供连接池选择最空闲的连接
  * @ClassName: UnprocessedRequests
  * @Author: whc
  * @Date: 2021/06/10/1:11
  */
 public class UnprocessedRequests {
 
-	private static ConcurrentHashMap<String, CompletableFuture<RpcResponse>> unprocessedResponseFutures = new ConcurrentHashMap<>();
+	private static final Logger logger = LoggerFactory.getLogger(UnprocessedRequests.class);
 
-	public void put(String requestId, CompletableFuture<RpcResponse> future) {
-		unprocessedResponseFutures.put(requestId, future);
+	// 分段数, 必须是2的幂
+	private static final int STRIPES = 32;
+
+	// 时间轮, 精度10ms, 添加和取消超时任务都是O(1)
+	private static final Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("rpc-request-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+	// 连接上未完成的请求数
+	private static final AttributeKey<AtomicInteger> PENDING_COUNT = AttributeKey.valueOf("pendingCount");
+
+	@SuppressWarnings("unchecked")
+	private final LongObjectHashMap<PendingRequest>[] stripes = new LongObjectHashMap[STRIPES];
+
+	public UnprocessedRequests() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new LongObjectHashMap<>();
+		}
 	}
 
-	public void remove(String requestId) {
-		unprocessedResponseFutures.remove(requestId);
+	/**
+	 * @param requestId 请求号
+	 * @param future 等待响应的 future
+	 * @param channel 发送请求的连接, 连接关闭时请求失败
+	 * @param timeoutMillis 超时时间, 小于等于0表示不超时
+	 */
+	public void put(long requestId, CompletableFuture<RpcResponse> future, Channel channel, long timeoutMillis) {
+		PendingRequest pending = new PendingRequest(future, channel);
+		LongObjectHashMap<PendingRequest> stripe = stripe(requestId);
+		synchronized (stripe) {
+			stripe.put(requestId, pending);
+		}
+		counter(channel).incrementAndGet();
+		if (timeoutMillis > 0) {
+			pending.timeout = TIMER.newTimeout(timeout -> fail(requestId,
+					new RpcException(RpcError.REQUEST_TIMEOUT, "requestId:" + requestId + ", timeout:" + timeoutMillis + "ms")),
+					timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public void remove(long requestId) {
+		PendingRequest pending = take(requestId);
+		if (pending != null && pending.timeout != null) {
+			pending.timeout.cancel();
+		}
 	}
 
 	public void complete(RpcResponse rpcResponse) {
-		CompletableFuture<RpcResponse> future = unprocessedResponseFutures.remove(rpcResponse.getRequestId());
-		if (null != future) {
-			future.complete(rpcResponse);
-		} else {
-			throw new IllegalStateException();
+		PendingRequest pending = take(rpcResponse.getRequestId());
+		if (pending == null) {
+			// 请求已超时或连接已关闭
+			logger.warn("响应对应的请求已结束, requestId: {}", rpcResponse.getRequestId());
+			return;
+		}
+		if (pending.timeout != null) {
+			pending.timeout.cancel();
+		}
+		pending.future.complete(rpcResponse);
+	}
+
+	/**
+	 * 以异常结束一个未完成的请求
+	 */
+	public void fail(long requestId, Throwable cause) {
+		PendingRequest pending = take(requestId);
+		if (pending != null) {
+			if (pending.timeout != null) {
+				pending.timeout.cancel();
+			}
+			pending.future.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * 连接关闭时, 以异常结束该连接上所有未完成的请求
+	 */
+	public void failChannel(Channel channel) {
+		List<PendingRequest> failed = new ArrayList<>();
+		for (LongObjectHashMap<PendingRequest> stripe : stripes) {
+			synchronized (stripe) {
+				Iterator<PendingRequest> iterator = stripe.values().iterator();
+				while (iterator.hasNext()) {
+					PendingRequest pending = iterator.next();
+					if (pending.channel == channel) {
+						iterator.remove();
+						failed.add(pending);
+					}
+				}
+			}
+		}
+		for (PendingRequest pending : failed) {
+			counter(channel).decrementAndGet();
+			if (pending.timeout != null) {
+				pending.timeout.cancel();
+			}
+			pending.future.completeExceptionally(new RpcException(RpcError.CHANNEL_CLOSED, channel.toString()));
+		}
+	}
+
+	/**
+	 * 连接上未完成的请求数
+	 */
+	public static int pendingCount(Channel channel) {
+		AtomicInteger counter = channel.attr(PENDING_COUNT).get();
+		return counter == null ? 0 : counter.get();
+	}
+
+	private PendingRequest take(long requestId) {
+		LongObjectHashMap<PendingRequest> stripe = stripe(requestId);
+		PendingRequest pending;
+		synchronized (stripe) {
+			pending = stripe.remove(requestId);
+		}
+		if (pending != null) {
+			counter(pending.channel).decrementAndGet();
+		}
+		return pending;
+	}
+
+	private static AtomicInteger counter(Channel channel) {
+		AtomicInteger counter = channel.attr(PENDING_COUNT).get();
+		if (counter == null) {
+			channel.attr(PENDING_COUNT).setIfAbsent(new AtomicInteger());
+			counter = channel.attr(PENDING_COUNT).get();
+		}
+		return counter;
+	}
+
+	private LongObjectHashMap<PendingRequest> stripe(long requestId) {
+		return stripes[(int) requestId & (STRIPES - 1)];
+	}
+
+	private static class PendingRequest {
+
+		private final CompletableFuture<RpcResponse> future;
+		private final Channel channel;
+		private volatile Timeout timeout;
+
+		PendingRequest(CompletableFuture<RpcResponse> future, Channel channel) {
+			this.future = future;
+			this.channel = channel;
 		}
 	}
 }
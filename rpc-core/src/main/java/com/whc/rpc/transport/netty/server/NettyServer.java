@@ -1,16 +1,20 @@
 package com.whc.rpc.transport.netty.server;
 
-import com.whc.rpc.registry.zk.ZKServiceRegistryImpl;
 import com.whc.rpc.transport.RpcServer;
 import com.whc.rpc.codec.CommonDecoder;
 import com.whc.rpc.codec.CommonEncoder;
 import com.whc.rpc.codec.Spliter;
+import com.whc.rpc.enumeration.ProtocolVersion;
 import com.whc.rpc.enumeration.RpcError;
 import com.whc.rpc.exception.RpcException;
 import com.whc.rpc.provider.ServiceProvider;
 import com.whc.rpc.provider.ServiceProviderImpl;
+import com.whc.rpc.registry.ServiceMetadata;
+import com.whc.rpc.registry.ServiceRegistrar;
 import com.whc.rpc.registry.ServiceRegistry;
 import com.whc.rpc.serializer.CommonSerializer;
+import com.whc.rpc.serializer.ServiceTypeRegistry;
+import com.whc.rpc.transport.netty.FlushConsolidation;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -22,9 +26,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * NIO方式服务提供者
+ * publishService 只收集服务, 端口绑定成功后再批量注册到注册中心, 客户端发现服务提供者时它一定已经可以接受连接
  * @ClassName: NettyServer
  * @Author: whc
  * @Date: 2021/05/29/20:44
@@ -38,9 +46,18 @@ public class NettyServer implements RpcServer {
 
 	private final ServiceRegistry serviceRegistry;
 	private final ServiceProvider serviceProvider;
+	// 异步注册服务, 失败时重试, 不阻塞事件循环和启动线程
+	private final ServiceRegistrar serviceRegistrar;
+	// 本服务端的业务线程池
+	private final ServiceExecutors serviceExecutors = new ServiceExecutors();
 
 	private CommonSerializer serializer;
 
+	// 已发布的服务名称, 端口绑定后统一注册
+	private final List<String> serviceNames = new ArrayList<>();
+	// 端口是否已绑定, 绑定之后发布的服务立即注册
+	private boolean bound;
+
 	public NettyServer(String host, int port) {
 		this(host, port, DEFAULT_SERIALIZER);
 	}
@@ -50,9 +67,11 @@ public class NettyServer implements RpcServer {
 		this.host = host;
 		this.port = port;
 
-		serviceRegistry = new ZKServiceRegistryImpl();
+		serviceRegistry = ServiceRegistry.getDefault();
 		serviceProvider = new ServiceProviderImpl();
 		this.serializer = CommonSerializer.getByCode(serializer);
+		ServiceMetadata metadata = ServiceMetadata.local(ProtocolVersion.V2, System.currentTimeMillis());
+		this.serviceRegistrar = new ServiceRegistrar(serviceRegistry, new InetSocketAddress(host, port), metadata);
 	}
 
 	/**
@@ -69,10 +88,18 @@ public class NettyServer implements RpcServer {
 		}
 		// com.whc.test.UserServiceImpl,UserService.Class
 		serviceProvider.addServiceProvider(service, serviceClass);
+		// 收集接口中的数据类型, 供序列化器预先注册
+		ServiceTypeRegistry.registerService(serviceClass);
 		// com.whc.test.UserService,127.0.0.1:9000
-		serviceRegistry.register(serviceClass.getCanonicalName(), new InetSocketAddress(host, port));
+		synchronized (this) {
+			serviceNames.add(serviceClass.getCanonicalName());
+			if (bound) {
+				serviceRegistrar.register(Collections.singletonList(serviceClass.getCanonicalName()));
+			}
+		}
 	}
 
+
 	@Override
 	public void start() {
 		// bossGroup 表示监听端口,accept新的连接请求
@@ -107,6 +134,10 @@ public class NettyServer implements RpcServer {
 							// 如果添加执行链的顺序为: head -> Spliter -> CommonDecoder -> NettyServerHandler -> CommonEncoder(out) -> tail
 							// 那么当写回数据出栈的时候,即到达了NettyServerHandler时进行ctx.writeAndFlush时,是从当前处理器从后往前找,找不到会报错
 							ChannelPipeline pipeline = ch.pipeline();
+							// 合并业务线程写回的响应的 flush, 放在最前面
+							if (FlushConsolidation.isEnabled()) {
+								pipeline.addLast(FlushConsolidation.newHandler());
+							}
 							// 支持自定义序列化方式
 							// 服务端发回响应对象RpcResponse,经过编码器转化为ByteBuf对象
 							pipeline.addLast(new CommonEncoder(serializer));
@@ -116,20 +147,30 @@ public class NettyServer implements RpcServer {
 							// 对ByteBuf解码成POJO对象(对应RpcRequest对象)
 							pipeline.addLast(new CommonDecoder());
 							// 对RpcRequest对象进行解析处理
-							pipeline.addLast(new NettyServerHandler());
+							pipeline.addLast(new NettyServerHandler(serviceExecutors));
 
 						}
 					});
 			// 实现端口绑定,建立连接, 会让主线程间接调用wait()方法，进而实现阻塞的效果
 			// 保证在初始化完成后才进行操作，避免调用一个初始化未完成的句柄
 			ChannelFuture future = serverBootstrap.bind(port).sync();
+			// 端口绑定成功后再注册服务
+			synchronized (this) {
+				bound = true;
+				if (!serviceNames.isEmpty()) {
+					serviceRegistrar.register(new ArrayList<>(serviceNames));
+				}
+			}
 			// 为了让netty不会关闭
 			future.channel().closeFuture().sync();
 		} catch (InterruptedException e) {
 			logger.error("启动服务器时有错误发生: ", e);
 		} finally {
+			serviceRegistrar.close();
 			bossGroup.shutdownGracefully();
 			workerGroup.shutdownGracefully();
+			// 只关闭本服务端的业务线程池, 同一进程中的其他服务端和客户端不受影响
+			serviceExecutors.shutdown();
 		}
 	}
 
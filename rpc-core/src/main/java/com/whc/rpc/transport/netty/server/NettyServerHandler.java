@@ -3,6 +3,7 @@ package com.whc.rpc.transport.netty.server;
 import com.whc.rpc.handler.RequestHandler;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.enumeration.ResponseCode;
 import com.whc.rpc.factory.SingletonFactory;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -10,8 +11,14 @@ import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Netty中处理RpcRequest的Handler
+ * 服务方法在各服务独立的业务线程池中执行, 不占用 IO 线程; 线程池已满时立即返回服务繁忙响应
+ * 单向调用只执行服务方法, 不构造也不写回响应
  * @ClassName: NettyServerHandler
  * @Author: whc
  * @Date: 2021/05/29/21:49
@@ -20,9 +27,12 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
 
 	private static final Logger logger = LoggerFactory.getLogger(NettyServerHandler.class);
 	private final RequestHandler requestHandler;
+	// 所属服务端的业务线程池
+	private final ServiceExecutors serviceExecutors;
 
-	public NettyServerHandler() {
+	NettyServerHandler(ServiceExecutors serviceExecutors) {
 		this.requestHandler = SingletonFactory.getInstance(RequestHandler.class);
+		this.serviceExecutors = serviceExecutors;
 	}
 
 
@@ -30,18 +40,60 @@ public class NettyServerHandler extends SimpleChannelInboundHandler<RpcRequest>
 	protected void channelRead0(ChannelHandlerContext ctx, RpcRequest msg) throws Exception {
 		try {
 			logger.info("服务器接收到请求: {}", msg);
-			Object result = requestHandler.handle(msg);
-			if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-				// 向客户端返回响应数据
-				ctx.writeAndFlush(RpcResponse.success(result, msg.getRequestId()));
-			} else {
-				logger.error("通道不可写");
+			ExecutorService executor = serviceExecutors.select(msg);
+			try {
+				executor.execute(() -> process(ctx, msg));
+			} catch (RejectedExecutionException e) {
+				logger.warn("服务繁忙, 拒绝请求: {}", msg.getRequestId());
+				if (!msg.isOneway()) {
+					writeResponse(ctx, RpcResponse.fail(ResponseCode.SERVICE_BUSY, msg.getRequestId()));
+				}
 			}
 		} finally {
 			ReferenceCountUtil.release(msg);
 		}
 	}
 
+	private void process(ChannelHandlerContext ctx, RpcRequest msg) {
+		try {
+			Object result = requestHandler.handle(msg);
+			long requestId = msg.getRequestId();
+			if (msg.isOneway()) {
+				if (result instanceof RpcResponse) {
+					logger.warn("单向调用失败, requestId: {}, {}", requestId, ((RpcResponse<?>) result).getMessage());
+				}
+				return;
+			}
+			if (result instanceof CompletableFuture) {
+				// 异步服务方法, 结果完成后再返回响应, 不占用 IO 线程
+				((CompletableFuture<?>) result).whenComplete((value, cause) -> {
+					if (cause != null) {
+						logger.error("异步服务方法调用失败", cause);
+						writeResponse(ctx, RpcResponse.fail(ResponseCode.FAIL, requestId));
+					} else {
+						writeResponse(ctx, RpcResponse.success(value, requestId));
+					}
+				});
+				return;
+			}
+			// 向客户端返回响应数据, 调用失败时处理器直接返回失败响应
+			writeResponse(ctx, result instanceof RpcResponse ? (RpcResponse<?>) result : RpcResponse.success(result, requestId));
+		} catch (Exception e) {
+			logger.error("处理请求时有错误发生: ", e);
+			if (!msg.isOneway()) {
+				writeResponse(ctx, RpcResponse.fail(ResponseCode.FAIL, msg.getRequestId()));
+			}
+		}
+	}
+
+	private void writeResponse(ChannelHandlerContext ctx, RpcResponse<?> response) {
+		if (ctx.channel().isActive() && ctx.channel().isWritable()) {
+			ctx.writeAndFlush(response);
+		} else {
+			logger.error("通道不可写");
+		}
+	}
+
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
 		logger.error("处理过程调用时有错误发生");
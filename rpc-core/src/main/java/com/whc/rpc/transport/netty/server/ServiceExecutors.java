@@ -0,0 +1,101 @@
+package com.whc.rpc.transport.netty.server;
+
+import com.whc.rpc.entity.RpcRequest;
+import com.whc.rpc.enumeration.RpcConfigEnum;
+import com.whc.rpc.factory.ThreadPoolFactory;
+import com.whc.rpc.provider.ServiceMethod;
+import com.whc.rpc.provider.ServiceProvider;
+import com.whc.rpc.provider.ServiceProviderImpl;
+import com.whc.rpc.util.RpcConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端业务线程池(舱壁隔离)
+ * 每个服务使用独立的有界线程池, 某个服务变慢或过载时只会占满自己的线程池, 不影响 IO 线程和其他服务
+ * 配置了 rpc.server.threads.接口名.方法名 的方法单独使用一个线程池
+ * 线程池属于创建它的 NettyServer, 服务端关闭时只关闭自己的线程池
+ * @ClassName: ServiceExecutors
+ * @Author: whc
+ * @Date: 2021/06/25/21:30
+ */
+class ServiceExecutors {
+
+	private static final Logger logger = LoggerFactory.getLogger(ServiceExecutors.class);
+
+	private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+	private static final int DEFAULT_QUEUE_CAPACITY = 256;
+	private static final String THREAD_NAME_PREFIX = "rpc-service-";
+
+	private static final ServiceProvider serviceProvider = new ServiceProviderImpl();
+
+	// 接口名.方法名 -> 线程池
+	private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+	/**
+	 * 选择处理请求的线程池, 精简请求按方法编号查找所属的服务
+	 * 找不到服务时使用默认线程池, 由 RequestHandler 返回失败响应
+	 */
+	ExecutorService select(RpcRequest rpcRequest) {
+		String serviceName = rpcRequest.getInterfaceName();
+		String methodName = rpcRequest.getMethodName();
+		if (serviceName == null) {
+			ServiceMethod serviceMethod = serviceProvider.getServiceMethod(rpcRequest.getMethodId());
+			if (serviceMethod == null) {
+				return executors.computeIfAbsent("", k -> createExecutor("default", ""));
+			}
+			serviceName = serviceMethod.getServiceName();
+			methodName = serviceMethod.getMethod().getName();
+		}
+		String methodKey = serviceName + "." + methodName;
+		ExecutorService executor = executors.get(methodKey);
+		if (executor == null) {
+			String name = serviceName;
+			executor = executors.computeIfAbsent(methodKey, k -> RpcConfig.getProperty(RpcConfigEnum.SERVER_THREADS.getPropertyValue() + "." + k) != null
+					? createExecutor(k, "." + k)
+					: createExecutor(name, "." + name));
+		}
+		return executor;
+	}
+
+	/**
+	 * 关闭所有线程池, 等待已提交的请求处理完成
+	 */
+	void shutdown() {
+		for (ExecutorService executor : executors.values()) {
+			executor.shutdown();
+		}
+		for (Map.Entry<String, ExecutorService> entry : executors.entrySet()) {
+			try {
+				if (!entry.getValue().awaitTermination(10, TimeUnit.SECONDS)) {
+					logger.warn("线程池 [{}] 未能在超时时间内关闭", entry.getKey());
+					entry.getValue().shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				logger.error("关闭线程池失败！");
+				entry.getValue().shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @param name 线程池名称
+	 * @param suffix 配置项后缀, 未配置时使用全局配置
+	 */
+	private static ExecutorService createExecutor(String name, String suffix) {
+		int threads = getIntProperty(RpcConfigEnum.SERVER_THREADS.getPropertyValue(), suffix, DEFAULT_THREADS);
+		int queueCapacity = getIntProperty(RpcConfigEnum.SERVER_QUEUE_CAPACITY.getPropertyValue(), suffix, DEFAULT_QUEUE_CAPACITY);
+		return ThreadPoolFactory.createBoundedThreadPool(THREAD_NAME_PREFIX + name, threads, queueCapacity, true);
+	}
+
+	private static int getIntProperty(String key, String suffix, int defaultValue) {
+		String value = RpcConfig.getProperty(key + suffix);
+		return value == null ? RpcConfig.getInt(key, defaultValue) : Integer.parseInt(value);
+	}
+}
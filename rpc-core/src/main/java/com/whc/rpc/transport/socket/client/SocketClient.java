@@ -38,6 +38,11 @@ public class SocketClient implements RpcClient {
 		this.serializer = CommonSerializer.getByCode(serializer);
 	}
 
+	@Override
+	public CommonSerializer getSerializer() {
+		return serializer;
+	}
+
 	@Override
 	public Object sendRequest(RpcRequest rpcRequest) {
 		if(serializer == null) {
@@ -45,7 +50,7 @@ public class SocketClient implements RpcClient {
 			throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
 		}
 
-		InetSocketAddress inetSocketAddress = serviceDiscovery.serviceDiscovery(rpcRequest.getInterfaceName());
+		InetSocketAddress inetSocketAddress = serviceDiscovery.serviceDiscovery(rpcRequest.getInterfaceName(), serializer.getCode()).getSocketAddress();
 
 		try (Socket socket = new Socket()) {
 			socket.connect(inetSocketAddress);
@@ -3,6 +3,7 @@ package com.whc.rpc.transport.socket.server;
 import com.whc.rpc.handler.RequestHandler;
 import com.whc.rpc.entity.RpcRequest;
 import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.enumeration.ResponseCode;
 import com.whc.rpc.serializer.CommonSerializer;
 import com.whc.rpc.transport.socket.util.ObjectReader;
 import com.whc.rpc.transport.socket.util.ObjectWriter;
@@ -12,6 +13,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 处理RpcRequest的工作线程,从服务端代码分离出来,简化服务端代码,单一职责原则
@@ -40,7 +43,18 @@ public class SocketRequestHandlerThread implements Runnable {
 			OutputStream outputStream = socket.getOutputStream();
 			RpcRequest rpcRequest = (RpcRequest) ObjectReader.readObject(inputStream);
 			Object result = requestHandler.handle(rpcRequest);
-			RpcResponse<Object> response = RpcResponse.success(result, rpcRequest.getRequestId());
+			RpcResponse<Object> response;
+			if (result instanceof CompletableFuture) {
+				// 异步服务方法, BIO 方式下每个请求独占一个线程, 直接等待结果
+				try {
+					response = RpcResponse.success(((CompletableFuture<?>) result).join(), rpcRequest.getRequestId());
+				} catch (CompletionException e) {
+					logger.error("异步服务方法调用失败", e.getCause());
+					response = RpcResponse.fail(ResponseCode.FAIL, rpcRequest.getRequestId());
+				}
+			} else {
+				response = RpcResponse.success(result, rpcRequest.getRequestId());
+			}
 			ObjectWriter.writeObject(outputStream, response, serializer);
 		} catch (IOException e) {
 			logger.error("调用或发送时有错误发生：", e);
@@ -1,15 +1,18 @@
 package com.whc.rpc.transport.socket.server;
 
-import com.whc.rpc.registry.zk.ZKServiceRegistryImpl;
 import com.whc.rpc.transport.RpcServer;
 import com.whc.rpc.handler.RequestHandler;
+import com.whc.rpc.enumeration.ProtocolVersion;
 import com.whc.rpc.enumeration.RpcError;
 import com.whc.rpc.exception.RpcException;
 import com.whc.rpc.factory.ThreadPoolFactory;
 import com.whc.rpc.provider.ServiceProvider;
 import com.whc.rpc.provider.ServiceProviderImpl;
+import com.whc.rpc.registry.ServiceMetadata;
+import com.whc.rpc.registry.ServiceRegistrar;
 import com.whc.rpc.registry.ServiceRegistry;
 import com.whc.rpc.serializer.CommonSerializer;
+import com.whc.rpc.serializer.ServiceTypeRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,9 +20,14 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.*;
 
 /**
+ * BIO方式服务提供者
+ * publishService 只收集服务, 开始监听端口后再批量注册到注册中心
  * @ClassName: SocketServer
  * @Author: whc
  * @Date: 2021/05/29/20:20
@@ -36,6 +44,13 @@ public class SocketServer implements RpcServer {
 
 	private final ServiceRegistry serviceRegistry;
 	private final ServiceProvider serviceProvider;
+	// 异步注册服务, 失败时重试, 不阻塞事件循环和启动线程
+	private final ServiceRegistrar serviceRegistrar;
+
+	// 已发布的服务名称, 开始监听端口后统一注册
+	private final List<String> serviceNames = new ArrayList<>();
+	// 是否已开始监听端口, 之后发布的服务立即注册
+	private boolean bound;
 
 	public SocketServer(String host, int port) {
 		this(host, port, DEFAULT_SERIALIZER);
@@ -45,9 +60,11 @@ public class SocketServer implements RpcServer {
 		this.host = host;
 		this.port = port;
 		threadPool = ThreadPoolFactory.createDefaultThreadPool("socket-rpc-server");
-		this.serviceRegistry = new ZKServiceRegistryImpl();
+		this.serviceRegistry = ServiceRegistry.getDefault();
 		this.serviceProvider = new ServiceProviderImpl();
 		this.serializer = CommonSerializer.getByCode(serializer);
+		ServiceMetadata metadata = ServiceMetadata.local(ProtocolVersion.V1, System.currentTimeMillis());
+		this.serviceRegistrar = new ServiceRegistrar(serviceRegistry, new InetSocketAddress(host, port), metadata);
 	}
 
 	@Override
@@ -57,13 +74,27 @@ public class SocketServer implements RpcServer {
 			throw new RpcException(RpcError.SERIALIZER_NOT_FOUND);
 		}
 		serviceProvider.addServiceProvider(service, serviceClass);
-		serviceRegistry.register(serviceClass.getCanonicalName(), new InetSocketAddress(host, port));
+		// 收集接口中的数据类型, 供序列化器预先注册
+		ServiceTypeRegistry.registerService(serviceClass);
+		synchronized (this) {
+			serviceNames.add(serviceClass.getCanonicalName());
+			if (bound) {
+				serviceRegistrar.register(Collections.singletonList(serviceClass.getCanonicalName()));
+			}
+		}
 	}
 
+
 	@Override
 	public void start() {
 		try (ServerSocket serverSocket = new ServerSocket(port)) {
 			logger.info("服务器启动……");
+			synchronized (this) {
+				bound = true;
+				if (!serviceNames.isEmpty()) {
+					serviceRegistrar.register(new ArrayList<>(serviceNames));
+				}
+			}
 			Socket socket;
 			// BIO的方式监听Socket
 			while((socket = serverSocket.accept()) != null) {
@@ -74,6 +105,8 @@ public class SocketServer implements RpcServer {
 			threadPool.shutdown();
 		} catch (IOException e) {
 			logger.error("服务器启动时有错误发生:", e);
+		} finally {
+			serviceRegistrar.close();
 		}
 	}
 }
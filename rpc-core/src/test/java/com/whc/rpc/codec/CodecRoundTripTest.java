@@ -0,0 +1,139 @@
+package com.whc.rpc.codec;
+
+import com.whc.rpc.entity.RpcRequest;
+import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.enumeration.ProtocolVersion;
+import com.whc.rpc.enumeration.SerializerCode;
+import com.whc.rpc.serializer.CommonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 编码后的数据帧逐字节交给 Spliter 和 CommonDecoder, 验证拆包和解码
+ * @ClassName: CodecRoundTripTest
+ * @Author: whc
+ * @Date: 2021/07/08/21:20
+ */
+public class CodecRoundTripTest {
+
+	private static final int[] SERIALIZERS = {SerializerCode.KRYO.getCode(), SerializerCode.JSON.getCode()};
+	// 数据长度分别需要1、2、3字节的 varint
+	private static final int[] SIZES = {10, 1000, 20000};
+
+	@Test
+	public void roundTripV1() {
+		roundTrip(ProtocolVersion.V1);
+	}
+
+	@Test
+	public void roundTripV2() {
+		roundTrip(ProtocolVersion.V2);
+	}
+
+	@Test
+	public void v2FrameUsesShortestLength() {
+		for (int size : SIZES) {
+			ByteBuf frame = encode(client(SerializerCode.KRYO.getCode(), ProtocolVersion.V2), request(size, false));
+			long varInt = RpcProtocol.getVarInt(frame, frame.readerIndex() + RpcProtocol.V2_FIXED_HEADER_LENGTH);
+			int length = (int) varInt;
+			int width = (int) (varInt >>> 32);
+			assertEquals(RpcProtocol.varIntSize(length), width);
+			assertEquals(RpcProtocol.V2_FIXED_HEADER_LENGTH + width + length, frame.readableBytes());
+			frame.release();
+		}
+	}
+
+	@Test
+	public void onewayFlag() {
+		EmbeddedChannel server = server(SerializerCode.KRYO.getCode());
+		feed(server, encode(client(SerializerCode.KRYO.getCode(), ProtocolVersion.V2), request(10, true)));
+		RpcRequest decoded = server.readInbound();
+		assertTrue(decoded.isOneway());
+	}
+
+	/**
+	 * 服务端按客户端第一个数据帧的协议版本回写响应, 同一个服务端可以同时服务 V1 和 V2 客户端
+	 */
+	@Test
+	public void mixedVersions() {
+		for (ProtocolVersion version : ProtocolVersion.values()) {
+			int serializerCode = SerializerCode.KRYO.getCode();
+			EmbeddedChannel client = client(serializerCode, version);
+			EmbeddedChannel server = server(serializerCode);
+			RpcRequest request = request(10, false);
+			feed(server, encode(client, request));
+			assertEquals(request, server.readInbound());
+			assertEquals(version, server.attr(RpcProtocol.PROTOCOL_VERSION).get());
+
+			server.writeOutbound(RpcResponse.success("ok", request.getRequestId()));
+			ByteBuf response = server.readOutbound();
+			assertEquals(version, RpcProtocol.detectVersion(response, response.readerIndex()));
+			feed(client, response);
+			RpcResponse<?> decoded = client.readInbound();
+			assertEquals(request.getRequestId(), decoded.getRequestId());
+			assertEquals("ok", decoded.getData());
+		}
+	}
+
+	private static void roundTrip(ProtocolVersion version) {
+		for (int serializerCode : SERIALIZERS) {
+			EmbeddedChannel client = client(serializerCode, version);
+			EmbeddedChannel server = server(serializerCode);
+			for (int size : SIZES) {
+				RpcRequest request = request(size, false);
+				feed(server, encode(client, request));
+				assertEquals(request, server.readInbound());
+			}
+			assertNull(server.readInbound());
+		}
+	}
+
+	private static EmbeddedChannel client(int serializerCode, ProtocolVersion version) {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.attr(RpcProtocol.PROTOCOL_VERSION).set(version);
+		channel.pipeline().addLast(new CommonEncoder(CommonSerializer.getByCode(serializerCode), version),
+				new Spliter(), new CommonDecoder());
+		return channel;
+	}
+
+	private static EmbeddedChannel server(int serializerCode) {
+		return new EmbeddedChannel(new CommonEncoder(CommonSerializer.getByCode(serializerCode)), new Spliter(), new CommonDecoder());
+	}
+
+	private static ByteBuf encode(EmbeddedChannel channel, Object msg) {
+		channel.writeOutbound(msg);
+		return channel.readOutbound();
+	}
+
+	/**
+	 * 逐字节写入, 覆盖数据帧被拆成任意多段的情况
+	 */
+	private static void feed(EmbeddedChannel channel, ByteBuf frame) {
+		while (frame.isReadable()) {
+			channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{frame.readByte()}));
+		}
+		frame.release();
+	}
+
+	private static RpcRequest request(int size, boolean oneway) {
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'a');
+		return RpcRequest.builder()
+				.requestId(size)
+				.interfaceName("com.whc.rpc.api.HelloService")
+				.methodName("hello")
+				.parameters(new Object[]{new String(chars)})
+				.paramTypes(new Class<?>[]{String.class})
+				.methodId(size)
+				.oneway(oneway)
+				.build();
+	}
+}
@@ -0,0 +1,60 @@
+package com.whc.rpc.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @ClassName: RpcProtocolTest
+ * @Author: whc
+ * @Date: 2021/07/08/21:05
+ */
+public class RpcProtocolTest {
+
+	private static final int[] VALUES = {0, 1, 127, 128, 16383, 16384, (1 << 21) - 1, 1 << 21, (1 << 28) - 1, 1 << 28, Integer.MAX_VALUE};
+	private static final int[] SIZES = {1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5};
+
+	@Test
+	public void varIntSize() {
+		for (int i = 0; i < VALUES.length; i++) {
+			assertEquals("value " + VALUES[i], SIZES[i], RpcProtocol.varIntSize(VALUES[i]));
+		}
+	}
+
+	@Test
+	public void varIntRoundTrip() {
+		for (int value : VALUES) {
+			int size = RpcProtocol.varIntSize(value);
+			// 最短编码以及用延续位补齐到最大宽度的编码都能解码回原值
+			for (int width = size; width <= RpcProtocol.V2_MAX_VARINT_LENGTH; width++) {
+				ByteBuf buf = Unpooled.buffer(8);
+				buf.writeByte(0x7F);
+				buf.writeZero(width);
+				RpcProtocol.setVarInt(buf, 1, value, width);
+				long varInt = RpcProtocol.getVarInt(buf, 1);
+				assertEquals("value " + value, value, (int) varInt);
+				assertEquals("value " + value, width, (int) (varInt >>> 32));
+			}
+		}
+	}
+
+	@Test
+	public void truncatedVarInt() {
+		ByteBuf buf = Unpooled.buffer(8);
+		buf.writeZero(3);
+		RpcProtocol.setVarInt(buf, 0, 1 << 20, 3);
+		buf.writerIndex(2);
+		assertEquals(-1, RpcProtocol.getVarInt(buf, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void malformedVarInt() {
+		ByteBuf buf = Unpooled.buffer(8);
+		for (int i = 0; i < 6; i++) {
+			buf.writeByte(0x80);
+		}
+		RpcProtocol.getVarInt(buf, 0);
+	}
+}
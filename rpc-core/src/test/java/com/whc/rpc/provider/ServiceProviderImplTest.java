@@ -0,0 +1,44 @@
+package com.whc.rpc.provider;
+
+import com.whc.rpc.util.MethodIdUtil;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @ClassName: ServiceProviderImplTest
+ * @Author: whc
+ * @Date: 2021/07/10/21:05
+ */
+public class ServiceProviderImplTest {
+
+	public interface BaseService {
+		String ping();
+	}
+
+	public interface UserService extends BaseService {
+	}
+
+	public interface BlogService extends BaseService {
+	}
+
+	/**
+	 * 父接口的同一个方法被两个服务继承时, 按各自发布的服务接口区分, 不会被后发布的服务覆盖
+	 */
+	@Test
+	public void inheritedMethodResolvesPerService() throws Throwable {
+		ServiceProviderImpl serviceProvider = new ServiceProviderImpl();
+		serviceProvider.addServiceProvider(() -> "user", UserService.class);
+		serviceProvider.addServiceProvider(() -> "blog", BlogService.class);
+
+		Method ping = BaseService.class.getMethod("ping");
+		String userService = UserService.class.getCanonicalName();
+		String blogService = BlogService.class.getCanonicalName();
+		assertEquals("user", serviceProvider.getServiceMethod(MethodIdUtil.methodId(userService, ping)).invoke(null));
+		assertEquals("blog", serviceProvider.getServiceMethod(MethodIdUtil.methodId(blogService, ping)).invoke(null));
+		assertEquals("user", serviceProvider.getServiceMethod(MethodIdUtil.methodKey(userService, ping)).invoke(null));
+		assertEquals("blog", serviceProvider.getServiceMethod(MethodIdUtil.methodKey(blogService, ping)).invoke(null));
+	}
+}
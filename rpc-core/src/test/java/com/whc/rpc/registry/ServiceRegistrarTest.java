@@ -0,0 +1,57 @@
+package com.whc.rpc.registry;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName: ServiceRegistrarTest
+ * @Author: whc
+ * @Date: 2021/07/09/20:50
+ */
+public class ServiceRegistrarTest {
+
+	private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9000);
+
+	@Test
+	public void retriesUntilRegistered() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		CountDownLatch registered = new CountDownLatch(1);
+		ServiceRegistry registry = (serviceName, address, metadata) -> {
+			// 前两次注册失败, 第三次成功
+			if (attempts.incrementAndGet() < 3) {
+				throw new IllegalStateException("registry unavailable");
+			}
+			registered.countDown();
+		};
+		new ServiceRegistrar(registry, ADDRESS, ServiceMetadata.DEFAULT).register(Collections.singletonList("a"));
+		assertTrue(registered.await(10, TimeUnit.SECONDS));
+		assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void stopsRetryingAfterClose() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		ServiceRegistry registry = (serviceName, address, metadata) -> {
+			attempts.incrementAndGet();
+			throw new IllegalStateException("registry unavailable");
+		};
+		ServiceRegistrar registrar = new ServiceRegistrar(registry, ADDRESS, ServiceMetadata.DEFAULT);
+		registrar.register(Collections.singletonList("a"));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (attempts.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		registrar.close();
+		// 第一次重试在 1 秒后, 关闭后不会再发生
+		Thread.sleep(1500);
+		assertEquals(1, attempts.get());
+	}
+}
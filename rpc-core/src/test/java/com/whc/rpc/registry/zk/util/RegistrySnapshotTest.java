@@ -0,0 +1,122 @@
+package com.whc.rpc.registry.zk.util;
+
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.ServiceMetadata;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @ClassName: RegistrySnapshotTest
+ * @Author: whc
+ * @Date: 2021/07/10/21:40
+ */
+public class RegistrySnapshotTest {
+
+	private static final String SERVICE = "com.whc.rpc.api.HelloService";
+	private static final String OTHER_SERVICE = "com.whc.rpc.api.UserService";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void missingFileIsEmpty() {
+		RegistrySnapshot snapshot = RegistrySnapshot.load(folder.getRoot().toPath().resolve("snapshot"));
+		assertNull(snapshot.get(SERVICE));
+	}
+
+	@Test
+	public void updateAndLoadRoundTrip() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("snapshot");
+		ServiceMetadata metadata = ServiceMetadata.builder().weight(50).cpus(8).protocolVersion(2).zone("zone-a").build();
+		List<ServiceEndpoint> endpoints = Arrays.asList(
+				new ServiceEndpoint("127.0.0.1", 9000, metadata), new ServiceEndpoint("127.0.0.1", 9001));
+		RegistrySnapshot snapshot = RegistrySnapshot.load(file);
+		snapshot.update(SERVICE, endpoints);
+		snapshot.update(OTHER_SERVICE, Collections.singletonList(new ServiceEndpoint("127.0.0.2", 9000)));
+		// 临时文件已经重命名为快照文件, 目录中不会有残留
+		assertArrayEquals(new String[]{"snapshot"}, folder.getRoot().list());
+
+		RegistrySnapshot loaded = RegistrySnapshot.load(file);
+		assertEndpoints(endpoints, loaded.get(SERVICE));
+		assertEquals(1, loaded.get(OTHER_SERVICE).size());
+
+		// 列表为空时从快照中删除该服务
+		loaded.update(OTHER_SERVICE, Collections.emptyList());
+		assertNull(RegistrySnapshot.load(file).get(OTHER_SERVICE));
+		assertEndpoints(endpoints, RegistrySnapshot.load(file).get(SERVICE));
+	}
+
+	/**
+	 * 服务提供者和元数据都没有变化时不写文件
+	 */
+	@Test
+	public void unchangedListIsNotWritten() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("snapshot");
+		List<ServiceEndpoint> endpoints = Collections.singletonList(new ServiceEndpoint("127.0.0.1", 9000));
+		RegistrySnapshot snapshot = RegistrySnapshot.load(file);
+		snapshot.update(SERVICE, endpoints);
+		Files.delete(file);
+		snapshot.update(SERVICE, Collections.singletonList(new ServiceEndpoint("127.0.0.1", 9000)));
+		assertFalse(Files.exists(file));
+
+		// 同一地址的元数据变化需要写入
+		snapshot.update(SERVICE, Collections.singletonList(
+				new ServiceEndpoint("127.0.0.1", 9000, ServiceMetadata.builder().weight(0).build())));
+		assertEquals(0, RegistrySnapshot.load(file).get(SERVICE).get(0).getMetadata().getWeight());
+	}
+
+	@Test
+	public void malformedLinesAreSkipped() throws Exception {
+		File file = folder.newFile("snapshot");
+		String content = "# comment\n"
+				+ "no-service-name=w=100\n"
+				+ "/127.0.0.1\\:9000=w=100\n"
+				+ SERVICE + "/no-port=w=100\n"
+				+ SERVICE + "/127.0.0.1\\:abc=w=100\n"
+				+ SERVICE + "/127.0.0.1\\:=w=100\n"
+				+ SERVICE + "/127.0.0.1\\:9000=w=abc;c=4;x=unknown\n"
+				+ SERVICE + "/127.0.0.1\\:9001=\n";
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+
+		List<ServiceEndpoint> endpoints = RegistrySnapshot.load(file.toPath()).get(SERVICE);
+		assertEquals(2, endpoints.size());
+		for (ServiceEndpoint endpoint : endpoints) {
+			// 格式错误的字段使用默认值
+			assertEquals(ServiceMetadata.DEFAULT_WEIGHT, endpoint.getMetadata().getWeight());
+			if (endpoint.getPort() == 9000) {
+				assertEquals(4, endpoint.getMetadata().getCpus());
+			} else {
+				assertEquals(ServiceMetadata.DEFAULT, endpoint.getMetadata());
+			}
+		}
+	}
+
+	@Test
+	public void unreadableFileIsEmpty() throws Exception {
+		// 快照路径是目录, 不是文件
+		Path dir = folder.newFolder("snapshot").toPath();
+		assertNull(RegistrySnapshot.load(dir).get(SERVICE));
+	}
+
+	private static void assertEndpoints(List<ServiceEndpoint> expected, List<ServiceEndpoint> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (ServiceEndpoint endpoint : expected) {
+			ServiceEndpoint loaded = actual.get(actual.indexOf(endpoint));
+			assertEquals(endpoint.getMetadata(), loaded.getMetadata());
+		}
+	}
+}
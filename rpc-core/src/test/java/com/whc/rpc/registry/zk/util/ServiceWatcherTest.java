@@ -0,0 +1,131 @@
+package com.whc.rpc.registry.zk.util;
+
+import com.whc.rpc.registry.ServiceEndpoint;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName: ServiceWatcherTest
+ * @Author: whc
+ * @Date: 2021/07/08/22:10
+ */
+public class ServiceWatcherTest {
+
+	private static final String SERVICE = "com.whc.rpc.api.HelloService";
+	private static final String SERVICE_PATH = "/my-rpc/" + SERVICE;
+	private static final long DEBOUNCE_MILLIS = 300;
+
+	private TestingServer server;
+	private CuratorFramework zkClient;
+	private ScheduledExecutorService scheduler;
+	private ServiceWatcher watcher;
+	// 每次发布的列表
+	private final List<List<ServiceEndpoint>> publishes = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		server = new TestingServer();
+		zkClient = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+		zkClient.start();
+		zkClient.blockUntilConnected(10, TimeUnit.SECONDS);
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		watcher = new ServiceWatcher(SERVICE, SERVICE_PATH, scheduler, DEBOUNCE_MILLIS,
+				(rpcServiceName, previous, current) -> publishes.add(current));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		watcher.close();
+		scheduler.shutdownNow();
+		zkClient.close();
+		server.close();
+	}
+
+	/**
+	 * 启动时已有的服务节点同步加载并立即发布一次, 不会再作为增加事件重复发布
+	 */
+	@Test
+	public void initialCache() throws Exception {
+		createNode(9000);
+		createNode(9001);
+		List<ServiceEndpoint> endpoints = watcher.start(zkClient);
+		assertEquals(addresses(9000, 9001), addressesOf(endpoints));
+		assertEquals(1, publishes.size());
+
+		Thread.sleep(DEBOUNCE_MILLIS * 3);
+		assertEquals(1, publishes.size());
+	}
+
+	/**
+	 * 一批增加、删除事件合并为少量的发布, 最终发布的列表与 zk 中的节点一致
+	 */
+	@Test
+	public void coalescesBursts() throws Exception {
+		watcher.start(zkClient);
+		publishes.clear();
+		for (int port = 9000; port < 9010; port++) {
+			createNode(port);
+		}
+		for (int port = 9000; port < 9003; port++) {
+			zkClient.delete().forPath(SERVICE_PATH + "/127.0.0.1:" + port);
+		}
+		Set<String> expected = addresses(9003, 9004, 9005, 9006, 9007, 9008, 9009);
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!expected.equals(addressesOf(watcher.getPublished())) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(expected, addressesOf(watcher.getPublished()));
+		// 13 个事件在几个防抖周期内到达, 发布次数远少于事件数
+		assertTrue("publishes: " + publishes.size(), publishes.size() <= 3);
+
+		Thread.sleep(DEBOUNCE_MILLIS * 3);
+		assertEquals(expected, addressesOf(publishes.get(publishes.size() - 1)));
+	}
+
+	@Test
+	public void seedIsReplacedOnStart() throws Exception {
+		List<ServiceEndpoint> seed = Collections.singletonList(ServiceEndpoint.parse("127.0.0.1:8000"));
+		assertTrue(watcher.seed(seed));
+		assertEquals(seed, watcher.getPublished());
+		createNode(9000);
+		watcher.start(zkClient);
+		assertEquals(addresses(9000), addressesOf(watcher.getPublished()));
+	}
+
+	private void createNode(int port) throws Exception {
+		zkClient.create().creatingParentsIfNeeded().forPath(SERVICE_PATH + "/127.0.0.1:" + port);
+	}
+
+	private static Set<String> addresses(int... ports) {
+		Set<String> addresses = new HashSet<>();
+		for (int port : ports) {
+			addresses.add("127.0.0.1:" + port);
+		}
+		return addresses;
+	}
+
+	private static Set<String> addressesOf(List<ServiceEndpoint> endpoints) {
+		Set<String> addresses = new HashSet<>();
+		for (ServiceEndpoint endpoint : endpoints) {
+			addresses.add(endpoint.getAddress());
+		}
+		return addresses;
+	}
+}
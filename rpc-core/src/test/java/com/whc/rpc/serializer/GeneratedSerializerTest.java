@@ -0,0 +1,139 @@
+package com.whc.rpc.serializer;
+
+import com.whc.rpc.entity.RpcRequest;
+import com.whc.rpc.entity.RpcResponse;
+import com.whc.rpc.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @ClassName: GeneratedSerializerTest
+ * @Author: whc
+ * @Date: 2021/07/10/20:15
+ */
+public class GeneratedSerializerTest {
+
+	// CodecRegistry 中的类型标记
+	private static final int BYTES = 10;
+	private static final int ARRAY = 11;
+	private static final int LIST = 12;
+
+	private final GeneratedSerializer serializer = new GeneratedSerializer();
+
+	@Test
+	public void roundTrip() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("k", Arrays.asList(1L, "v", null));
+		RpcRequest request = request(new Object[]{"s", 1, -7L, true, 1.5d, 'c', new byte[]{1, 2, 3},
+				Arrays.asList("a", "b"), new HashSet<>(Collections.singletonList(3)), map, new String[]{"x", null}, String.class, null});
+		RpcRequest decoded = (RpcRequest) serializer.deserialize(serializer.serialize(request), RpcRequest.class);
+		assertEquals(request.getRequestId(), decoded.getRequestId());
+		assertEquals(request.getInterfaceName(), decoded.getInterfaceName());
+		assertEquals(request.getMethodName(), decoded.getMethodName());
+		assertEquals(request.getMethodId(), decoded.getMethodId());
+		assertArrayEquals(request.getParamTypes(), decoded.getParamTypes());
+		assertArrayEquals((byte[]) request.getParameters()[6], (byte[]) decoded.getParameters()[6]);
+		request.getParameters()[6] = null;
+		decoded.getParameters()[6] = null;
+		assertArrayEquals(request.getParameters(), decoded.getParameters());
+
+		RpcResponse<String> response = RpcResponse.success("ok", 9);
+		assertEquals(response, serializer.deserialize(serializer.serialize(response), RpcResponse.class));
+	}
+
+	/**
+	 * 截断在任意位置的数据都以 SerializeException 结束
+	 */
+	@Test
+	public void truncatedInput() {
+		byte[] bytes = serializer.serialize(request(new Object[]{"s", new byte[]{1, 2, 3}, Arrays.asList("a", "b")}));
+		for (int length = 0; length < bytes.length; length++) {
+			try {
+				serializer.deserialize(Arrays.copyOf(bytes, length), RpcRequest.class);
+				fail("truncated at " + length);
+			} catch (SerializeException expected) {
+				// 预期的异常
+			}
+		}
+	}
+
+	@Test(expected = SerializeException.class)
+	public void rejectsHugeArray() {
+		ByteBuf in = requestPrefix();
+		in.writeByte(ARRAY);
+		writeString(in, "java.lang.Object");
+		writeVarInt(in, Integer.MAX_VALUE - 1);
+		serializer.deserialize(in, RpcRequest.class);
+	}
+
+	@Test(expected = SerializeException.class)
+	public void rejectsHugeList() {
+		ByteBuf in = requestPrefix();
+		in.writeByte(ARRAY);
+		writeString(in, "java.lang.Object");
+		// 1 个元素
+		writeVarInt(in, 2);
+		in.writeByte(LIST);
+		writeVarInt(in, Integer.MAX_VALUE - 1);
+		serializer.deserialize(in, RpcRequest.class);
+	}
+
+	@Test(expected = SerializeException.class)
+	public void rejectsHugeBytes() {
+		ByteBuf in = requestPrefix();
+		in.writeByte(ARRAY);
+		writeString(in, "java.lang.Object");
+		writeVarInt(in, 2);
+		in.writeByte(BYTES);
+		writeVarInt(in, Integer.MAX_VALUE);
+		serializer.deserialize(in, RpcRequest.class);
+	}
+
+	private static RpcRequest request(Object[] parameters) {
+		return RpcRequest.builder()
+				.requestId(42)
+				.interfaceName("com.whc.rpc.api.HelloService")
+				.methodName("hello")
+				.parameters(parameters)
+				.paramTypes(new Class<?>[]{String.class, int.class})
+				.methodId(-5)
+				.build();
+	}
+
+	/**
+	 * requestId = 0, interfaceName = null, methodName = null, 之后是 parameters
+	 */
+	private static ByteBuf requestPrefix() {
+		ByteBuf in = Unpooled.buffer();
+		in.writeByte(0);
+		in.writeByte(0);
+		in.writeByte(0);
+		return in;
+	}
+
+	private static void writeString(ByteBuf out, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length + 1);
+		out.writeBytes(bytes);
+	}
+
+	private static void writeVarInt(ByteBuf out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+}
@@ -0,0 +1,58 @@
+package com.whc.rpc.serializer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @ClassName: KryoRegistrationsTest
+ * @Author: whc
+ * @Date: 2021/07/08/20:10
+ */
+public class KryoRegistrationsTest {
+
+	private static Map<Integer, Class<?>> load(String resource) {
+		return KryoRegistrations.load(KryoRegistrationsTest.class.getClassLoader(), resource);
+	}
+
+	@Test
+	public void loadsExplicitIds() {
+		Map<Integer, Class<?>> registrations = load("kryo/valid");
+		assertEquals(2, registrations.size());
+		assertEquals(ArrayList.class, registrations.get(100));
+		assertEquals(HashMap.class, registrations.get(101));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsIdCollision() {
+		load("kryo/conflict");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsTypeWithTwoIds() {
+		load("kryo/duplicate-class");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsMissingType() {
+		load("kryo/missing-class");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsReservedId() {
+		load("kryo/reserved-id");
+	}
+
+	@Test
+	public void serializerLoadsSharedTable() {
+		// rpc-core 本身不带编号表, 只有 API 模块提供
+		assertEquals(0, load(KryoRegistrations.RESOURCE).size());
+		KryoSerializer serializer = new KryoSerializer();
+		byte[] bytes = serializer.serialize(new ArrayList<>());
+		assertEquals(new ArrayList<>(), serializer.deserialize(bytes, ArrayList.class));
+	}
+}
@@ -0,0 +1,57 @@
+package com.whc.rpc.transport.netty.client;
+
+import com.whc.rpc.enumeration.ProtocolVersion;
+import com.whc.rpc.registry.ServiceEndpoint;
+import com.whc.rpc.registry.ServiceMetadata;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName: ChannelProviderTest
+ * @Author: whc
+ * @Date: 2021/07/08/21:40
+ */
+public class ChannelProviderTest {
+
+	@Test
+	public void undeclaredVersionUsesV1() {
+		assertEquals(ProtocolVersion.V1, ChannelProvider.negotiate(ServiceMetadata.DEFAULT));
+		assertEquals(ProtocolVersion.V1, ChannelProvider.negotiate(ServiceMetadata.parse("w=100")));
+	}
+
+	@Test
+	public void declaredVersionIsUsed() {
+		assertEquals(ProtocolVersion.V1, ChannelProvider.negotiate(ServiceMetadata.parse("v=1")));
+		assertEquals(ProtocolVersion.V2, ChannelProvider.negotiate(ServiceMetadata.parse("v=2")));
+	}
+
+	@Test
+	public void newerVersionFallsBackToHighestKnown() {
+		assertEquals(ProtocolVersion.V2, ChannelProvider.negotiate(ServiceMetadata.parse("v=3")));
+	}
+
+	/**
+	 * 同一地址提供多个服务时, 只有所有服务都下线后才不再使用该地址
+	 */
+	@Test
+	public void addressStaysInUseWhileAnyServiceListsIt() {
+		ServiceEndpoint shared = ServiceEndpoint.parse("127.0.0.1:9100");
+		ServiceEndpoint other = ServiceEndpoint.parse("127.0.0.1:9101");
+		List<ServiceEndpoint> none = Collections.emptyList();
+		ChannelProvider.SERVICE_CHANGE_LISTENER.onChange("a", Collections.singletonList(shared), Collections.singletonList(shared), none);
+		ChannelProvider.SERVICE_CHANGE_LISTENER.onChange("b", Collections.singletonList(shared), Collections.singletonList(shared), none);
+
+		ChannelProvider.SERVICE_CHANGE_LISTENER.onChange("a", Collections.singletonList(other), Collections.singletonList(other), Collections.singletonList(shared));
+		assertTrue(ChannelProvider.isInUse(shared.getSocketAddress()));
+
+		ChannelProvider.SERVICE_CHANGE_LISTENER.onChange("b", none, none, Collections.singletonList(shared));
+		assertFalse(ChannelProvider.isInUse(shared.getSocketAddress()));
+		assertTrue(ChannelProvider.isInUse(other.getSocketAddress()));
+	}
+}